@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class And implements Exp {
+public class And extends Node implements Exp {
 	private Exp lhs, rhs;
 	
 	public And(Exp lhs, Exp rhs) {
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class ArrayAssign implements Statement {
+public class ArrayAssign extends Node implements Statement {
 	private Identifier id;
 	private Exp index, value;
 	
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class ArrayLength implements Exp {
+public class ArrayLength extends Node implements Exp {
 	private Exp array;
 	
 	public ArrayLength(Exp array) {
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class ArrayLookup implements Exp {
+public class ArrayLookup extends Node implements Exp {
 	private Exp array, index;
 	
 	public ArrayLookup(Exp array, Exp index) {
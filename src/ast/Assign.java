@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class Assign implements Statement {
+public class Assign extends Node implements Statement {
 	private Identifier id;
 	private Exp value;
 	
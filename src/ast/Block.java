@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class Block implements Statement {
+public class Block extends Node implements Statement {
 	private StatementList stms;
 	
 	public Block(StatementList stms) {
@@ -0,0 +1,155 @@
+package ast;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/*
+ * List kept in blocks of at most BLOCK elements. Replacing a range only
+ * rebuilds the blocks around it, so splicing into a long list moves the
+ * elements of those blocks and one end index per block, not the elements
+ * after the range. Appending is amortized constant like ArrayList; get()
+ * finds the block by binary search.
+ */
+public class BlockList<T> extends AbstractList<T> implements RandomAccess {
+	private final static int BLOCK = 256;
+
+	private int size;
+	private int blocks;
+	private Object[][] elements = new Object[1][];
+	private int[] ends = new int[1]; // index after the last element of each block
+
+	// block holding index, the last block for the end of the list
+	private int block(int index) {
+		if (blocks <= 1 || index < ends[0])
+			return 0;
+
+		int low = 1, high = blocks - 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (ends[middle] <= index)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	private int blockStart(int block) {
+		return block == 0 ? 0 : ends[block - 1];
+	}
+
+	@SuppressWarnings("unchecked")
+	public T get(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index " + index + " outside of list of size " + size);
+
+		int block = block(index);
+		return (T) elements[block][index - blockStart(block)];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean add(T element) {
+		int last = blocks - 1;
+
+		if (last < 0 || ends[last] - blockStart(last) == BLOCK) {
+			insertBlocks(blocks, 1);
+			last++;
+			ends[last] = size;
+			if (elements[last] == null)
+				elements[last] = new Object[8];
+		}
+
+		int count = ends[last] - blockStart(last);
+		if (count == elements[last].length)
+			elements[last] = Arrays.copyOf(elements[last], Math.min(count * 2, BLOCK));
+
+		elements[last][count] = element;
+		ends[last]++;
+		size++;
+		modCount++;
+		return true;
+	}
+
+	// drop the elements, keeping the block arrays for the next ones
+	public void clear() {
+		for (int block = 0; block < blocks; block++)
+			Arrays.fill(elements[block], null);
+
+		size = 0;
+		blocks = 0;
+		modCount++;
+	}
+
+	// replace the elements [from, to) with the ones of replacement
+	public void replace(int from, int to, List<? extends T> replacement) {
+		if (from < 0 || from > to || to > size)
+			throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") outside of list of size " + size);
+
+		// the blocks holding from and to are rebuilt around the new elements
+		int first = blocks == 0 ? 0 : block(from);
+		int last = blocks == 0 ? -1 : block(to);
+		int head = from - (blocks == 0 ? 0 : blockStart(first));
+		int tail = blocks == 0 ? 0 : ends[last] - to;
+		Object[] merged = new Object[head + replacement.size() + tail];
+
+		if (head > 0)
+			System.arraycopy(elements[first], 0, merged, 0, head);
+		for (int i = 0; i < replacement.size(); i++)
+			merged[head + i] = replacement.get(i);
+		if (tail > 0)
+			System.arraycopy(elements[last], to - blockStart(last), merged, merged.length - tail, tail);
+
+		int count = (merged.length + BLOCK - 1) / BLOCK;
+		int start = blocks == 0 ? 0 : blockStart(first);
+		int delta = replacement.size() - (to - from);
+
+		if (count > last - first + 1)
+			insertBlocks(last + 1, count - (last - first + 1));
+		else if (count < last - first + 1)
+			removeBlocks(first + count, last - first + 1 - count);
+
+		for (int i = 0; i < count; i++) {
+			int length = Math.min(BLOCK, merged.length - i * BLOCK);
+
+			elements[first + i] = Arrays.copyOfRange(merged, i * BLOCK, i * BLOCK + length);
+			ends[first + i] = start + i * BLOCK + length;
+		}
+		for (int block = first + count; block < blocks; block++)
+			ends[block] += delta;
+
+		size += delta;
+		modCount++;
+	}
+
+	// open count empty blocks at index, after the blocks in use
+	private void insertBlocks(int index, int count) {
+		if (blocks + count > elements.length) {
+			int capacity = Math.max(elements.length * 2, blocks + count);
+			elements = Arrays.copyOf(elements, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+		}
+
+		// an unused block array past the end is kept for add()
+		Object[] spare = elements[blocks];
+		System.arraycopy(elements, index, elements, index + count, blocks - index);
+		System.arraycopy(ends, index, ends, index + count, blocks - index);
+		for (int i = index; i < index + count; i++)
+			elements[i] = null;
+		if (index == blocks)
+			elements[index] = spare;
+		blocks += count;
+	}
+
+	private void removeBlocks(int index, int count) {
+		System.arraycopy(elements, index + count, elements, index, blocks - index - count);
+		System.arraycopy(ends, index + count, ends, index, blocks - index - count);
+		Arrays.fill(elements, blocks - count, blocks, null);
+		blocks -= count;
+	}
+}
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class BooleanArrayType implements Type {
+public class BooleanArrayType extends Node implements Type {
 	public void accept(Visitor v) {
 		v.visit(this);
 	}
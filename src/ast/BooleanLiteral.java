@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class BooleanLiteral implements Exp {
+public class BooleanLiteral extends Node implements Exp {
 	private boolean value;
 	
 	public BooleanLiteral(boolean value) {
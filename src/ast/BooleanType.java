@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class BooleanType implements Type {
+public class BooleanType extends Node implements Type {
 	public void accept(Visitor v) {
 		v.visit(this);
 	}
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class CharArrayType implements Type {
+public class CharArrayType extends Node implements Type {
 	public void accept(Visitor v) {
 		v.visit(this);
 	}
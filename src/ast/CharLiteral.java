@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class CharLiteral implements Exp {
+public class CharLiteral extends Node implements Exp {
 	private char value;
 	
 	public CharLiteral(char value) {
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class CharType implements Type {
+public class CharType extends Node implements Type {
 	public void accept(Visitor v) {
 		v.visit(this);
 	}
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class Divide implements Exp{
+public class Divide extends Node implements Exp {
 	private Exp lhs, rhs;
 
 	public Divide(Exp lhs, Exp rhs) {
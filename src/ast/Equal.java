@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class Equal implements Exp{
+public class Equal extends Node implements Exp {
 	private Exp lhs, rhs;
 
 	public Equal(Exp lhs, Exp rhs) {
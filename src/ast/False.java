@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class False implements Exp {
+public class False extends Node implements Exp {
 	public void accept(Visitor v) {
 		v.visit(this);
 	}
@@ -0,0 +1,476 @@
+package ast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import visitor.Visitor;
+
+/*
+ * Syntax tree stored as parallel arrays instead of one object per node.
+ * A node is an int id into the arrays; NodeKind documents which of first,
+ * second, third and payload a kind uses. The elements of a list node are
+ * kept contiguously in a shared element array, a missing child or element
+ * (a null in the object tree) is NONE. Identifier names are interned, the
+ * payload of a named node is the index of its name.
+ *
+ * The span of a node is the range of token indices it was parsed from,
+ * as counted by TokenCursor.getIndex().
+ *
+ * Passes over the whole tree should use the accessors directly. For
+ * existing visitors the to...() methods build the object nodes of a
+ * subtree on demand, each with the id of the flat node it came from;
+ * materialize() has what that costs.
+ */
+public class FlatAst {
+	public static final int NONE = -1;
+
+	private static final NodeKind[] KINDS = NodeKind.values();
+
+	private byte[] kinds;
+	private int[] firsts;
+	private int[] seconds; // also the element count of list nodes
+	private int[] payloads; // value, name index, third child or first element
+	private int[] spanStarts;
+	private int[] spanEnds;
+	private int size;
+
+	private int[] elements = new int[64]; // elements of finished lists
+	private int elementCount;
+	private int[] pending = new int[64]; // elements of lists still being built
+	private int pendingCount;
+
+	private ArrayList<String> names = new ArrayList<String>();
+	private HashMap<String, Integer> nameIndex = new HashMap<String, Integer>();
+
+	private int root = NONE;
+
+	public FlatAst() {
+		this(256);
+	}
+
+	public FlatAst(int capacity) {
+		capacity = Math.max(capacity, 16);
+		kinds = new byte[capacity];
+		firsts = new int[capacity];
+		seconds = new int[capacity];
+		payloads = new int[capacity];
+		spanStarts = new int[capacity];
+		spanEnds = new int[capacity];
+	}
+
+	// append a node and return its id
+	public int add(NodeKind kind, int first, int second, int payload, int spanStart, int spanEnd) {
+		if (size == kinds.length) {
+			int capacity = Math.max(size * 2, 16);
+			kinds = Arrays.copyOf(kinds, capacity);
+			firsts = Arrays.copyOf(firsts, capacity);
+			seconds = Arrays.copyOf(seconds, capacity);
+			payloads = Arrays.copyOf(payloads, capacity);
+			spanStarts = Arrays.copyOf(spanStarts, capacity);
+			spanEnds = Arrays.copyOf(spanEnds, capacity);
+		}
+
+		kinds[size] = (byte) kind.ordinal();
+		firsts[size] = first;
+		seconds[size] = second;
+		payloads[size] = payload;
+		spanStarts[size] = spanStart;
+		spanEnds[size] = spanEnd;
+		return size++;
+	}
+
+	// index of an interned identifier name
+	public int name(String name) {
+		Integer index = nameIndex.get(name);
+
+		if (index == null) {
+			index = names.size();
+			names.add(name);
+			nameIndex.put(name, index);
+		}
+		return index;
+	}
+
+	/*
+	 * Lists are built in three steps: beginList() returns a mark, the
+	 * elements are passed to addElement() as they are parsed and
+	 * endList() creates the list node. Lists may nest, the elements of an
+	 * inner list are moved out before the outer one continues.
+	 */
+	public int beginList() {
+		return pendingCount;
+	}
+
+	public void addElement(int node) {
+		if (pendingCount == pending.length)
+			pending = Arrays.copyOf(pending, Math.max(pendingCount * 2, 16));
+
+		pending[pendingCount++] = node;
+	}
+
+	public int endList(NodeKind kind, int mark, int spanStart, int spanEnd) {
+		int count = pendingCount - mark;
+
+		if (elementCount + count > elements.length)
+			elements = Arrays.copyOf(elements, Math.max(elements.length * 2, elementCount + count));
+
+		System.arraycopy(pending, mark, elements, elementCount, count);
+		pendingCount = mark;
+
+		int node = add(kind, NONE, count, elementCount, spanStart, spanEnd);
+		elementCount += count;
+		return node;
+	}
+
+	// drop the unused capacity once the tree is complete
+	public void trim() {
+		kinds = Arrays.copyOf(kinds, size);
+		firsts = Arrays.copyOf(firsts, size);
+		seconds = Arrays.copyOf(seconds, size);
+		payloads = Arrays.copyOf(payloads, size);
+		spanStarts = Arrays.copyOf(spanStarts, size);
+		spanEnds = Arrays.copyOf(spanEnds, size);
+		elements = Arrays.copyOf(elements, elementCount);
+		pending = new int[16];
+	}
+
+	public void setRoot(int root) {
+		this.root = root;
+	}
+
+	public int getRoot() {
+		return root;
+	}
+
+	// number of nodes
+	public int size() {
+		return size;
+	}
+
+	public NodeKind getKind(int node) {
+		return KINDS[kinds[node]];
+	}
+
+	public int getFirst(int node) {
+		return firsts[node];
+	}
+
+	public int getSecond(int node) {
+		return seconds[node];
+	}
+
+	// false statement of IF, value of ARRAY_ASSIGN
+	public int getThird(int node) {
+		return payloads[node];
+	}
+
+	public int getListSize(int node) {
+		return seconds[node];
+	}
+
+	public int getElement(int node, int index) {
+		return elements[payloads[node] + index];
+	}
+
+	public int getIntVal(int node) {
+		return payloads[node];
+	}
+
+	public float getFloatVal(int node) {
+		return Float.intBitsToFloat(payloads[node]);
+	}
+
+	public boolean getBooleanVal(int node) {
+		return payloads[node] != 0;
+	}
+
+	public char getCharVal(int node) {
+		return (char) payloads[node];
+	}
+
+	// name of an IDENTIFIER or IDENTIFIER_EXP node
+	public String getName(int node) {
+		return names.get(payloads[node]);
+	}
+
+	public int getNameIndex(int node) {
+		return payloads[node];
+	}
+
+	public int getNameCount() {
+		return names.size();
+	}
+
+	public int getSpanStart(int node) {
+		return spanStarts[node];
+	}
+
+	public int getSpanEnd(int node) {
+		return spanEnds[node];
+	}
+
+	/*
+	 * Walk the whole tree with an object visitor. This materializes the
+	 * whole object tree first, see materialize(), and drops it afterwards;
+	 * passes that run often should use the accessors instead.
+	 */
+	public void accept(Visitor v) {
+		toProgram().accept(v);
+	}
+
+	public Program toProgram() {
+		return (Program) materialize(root, NodeKind.PROGRAM, "a program");
+	}
+
+	public Declarations toDeclarations(int node) {
+		return (Declarations) materialize(node, NodeKind.DECLARATIONS, "a declaration list");
+	}
+
+	public StatementList toStatementList(int node) {
+		if (node != NONE && getKind(node) == NodeKind.BLOCK)
+			return ((Block) materialize(node)).getStms();
+
+		return (StatementList) materialize(node, NodeKind.STATEMENT_LIST, "a statement list");
+	}
+
+	public Type toType(int node) {
+		if (node != NONE && (getKind(node).ordinal() < NodeKind.INT_TYPE.ordinal()
+				|| getKind(node).ordinal() > NodeKind.CHAR_ARRAY_TYPE.ordinal()))
+			throw new IllegalArgumentException("Node " + node + " is a " + getKind(node) + ", not a type");
+
+		return (Type) materialize(node);
+	}
+
+	public Identifier toIdentifier(int node) {
+		return (Identifier) materialize(node, NodeKind.IDENTIFIER, "an identifier");
+	}
+
+	public Statement toStatement(int node) {
+		if (node != NONE && (getKind(node).ordinal() < NodeKind.BLOCK.ordinal()
+				|| getKind(node).ordinal() > NodeKind.ARRAY_ASSIGN.ordinal()))
+			throw new IllegalArgumentException("Node " + node + " is a " + getKind(node) + ", not a statement");
+
+		return (Statement) materialize(node);
+	}
+
+	public Exp toExp(int node) {
+		if (node != NONE && (getKind(node).ordinal() < NodeKind.AND.ordinal()
+				|| getKind(node).ordinal() > NodeKind.NEGATIVE.ordinal()))
+			throw new IllegalArgumentException("Node " + node + " is a " + getKind(node) + ", not an expression");
+
+		return (Exp) materialize(node);
+	}
+
+	private Object materialize(int node, NodeKind kind, String what) {
+		if (node != NONE && getKind(node) != kind)
+			throw new IllegalArgumentException("Node " + node + " is a " + getKind(node) + ", not " + what);
+
+		return materialize(node);
+	}
+
+	/*
+	 * Build the object nodes of the subtree at node, null for NONE. The
+	 * walk is a loop over two explicit stacks, so deep trees cannot
+	 * overflow the thread stack.
+	 *
+	 * Memory: one object per node of the subtree, plus the list objects,
+	 * about as much as parseProgram() allocates for the same input and
+	 * several times the arrays of the flat tree. A declaration list builds
+	 * one type object per declaration where the flat tree shares one node.
+	 * The stacks hold the nodes waiting for their children and the objects
+	 * built for those children: at most the depth of the subtree plus the
+	 * elements of the lists it is inside of.
+	 */
+	private Object materialize(int node) {
+		int[] nodes = new int[16]; // NONE, a node to expand, or ~node once its children are pushed
+		int nodeCount = 0;
+		Object[] values = new Object[16]; // objects built for the children of pending nodes
+		int valueCount = 0;
+
+		nodes[nodeCount++] = node;
+
+		while (nodeCount > 0) {
+			int next = nodes[--nodeCount];
+
+			if (next == NONE) {
+				if (valueCount == values.length)
+					values = Arrays.copyOf(values, valueCount * 2);
+				values[valueCount++] = null;
+				continue;
+			}
+
+			if (next >= 0) {
+				// build it after its children, the first child on top
+				int children = childCount(next);
+
+				if (nodeCount + children + 1 > nodes.length)
+					nodes = Arrays.copyOf(nodes, Math.max(nodes.length * 2, nodeCount + children + 1));
+
+				nodes[nodeCount++] = ~next;
+				for (int i = children - 1; i >= 0; i--)
+					nodes[nodeCount++] = child(next, i);
+				continue;
+			}
+
+			next = ~next;
+			valueCount -= childCount(next);
+			Object built = build(next, values, valueCount);
+			Arrays.fill(values, valueCount, valueCount + childCount(next), null);
+
+			if (valueCount == values.length)
+				values = Arrays.copyOf(values, valueCount * 2);
+			values[valueCount++] = built;
+		}
+		return values[0];
+	}
+
+	private int childCount(int node) {
+		switch (getKind(node)) {
+		case DECLARATIONS:
+		case VAR_DECL_LIST:
+		case STATEMENT_LIST:
+		case BLOCK:
+			return getListSize(node);
+		case IF:
+		case ARRAY_ASSIGN:
+			return 3;
+		case NOT:
+		case NEGATIVE:
+			return 1;
+		case INT_TYPE:
+		case INT_ARRAY_TYPE:
+		case FLOAT_TYPE:
+		case FLOAT_ARRAY_TYPE:
+		case BOOLEAN_TYPE:
+		case BOOLEAN_ARRAY_TYPE:
+		case CHAR_TYPE:
+		case CHAR_ARRAY_TYPE:
+		case INT_LITERAL:
+		case FLOAT_LITERAL:
+		case BOOLEAN_LITERAL:
+		case CHAR_LITERAL:
+		case IDENTIFIER_EXP:
+		case IDENTIFIER:
+			return 0;
+		default:
+			return 2;
+		}
+	}
+
+	// child i of node in the order of childCount(), elements for lists
+	private int child(int node, int i) {
+		switch (getKind(node)) {
+		case DECLARATIONS:
+		case VAR_DECL_LIST:
+		case STATEMENT_LIST:
+		case BLOCK:
+			return getElement(node, i);
+		default:
+			return i == 0 ? firsts[node] : i == 1 ? seconds[node] : payloads[node];
+		}
+	}
+
+	// the object of node from the objects of its children, values[from] on
+	private Object build(int node, Object[] values, int from) {
+		Object first = from < values.length ? values[from] : null;
+		Object second = from + 1 < values.length ? values[from + 1] : null;
+
+		switch (getKind(node)) {
+		case PROGRAM:
+			return new Program((StatementList) second, (Declarations) first);
+		case DECLARATIONS:
+			Declarations declarations = new Declarations();
+			for (int i = 0; i < getListSize(node); i++)
+				declarations.addElement((VarDeclList) values[from + i]);
+			return declarations;
+		case VAR_DECL_LIST:
+			VarDeclList varDeclList = new VarDeclList();
+			for (int i = 0; i < getListSize(node); i++)
+				varDeclList.addElement((VarDecl) values[from + i]);
+			return varDeclList;
+		case VAR_DECL:
+			return new VarDecl((Type) first, (Identifier) second);
+		case STATEMENT_LIST:
+		case BLOCK:
+			StatementList statementList = new StatementList();
+			for (int i = 0; i < getListSize(node); i++)
+				statementList.addElement((Statement) values[from + i]);
+			return getKind(node) == NodeKind.BLOCK ? withId(new Block(statementList), node) : statementList;
+		case INT_TYPE:
+			return withId(new IntegerType(), node);
+		case INT_ARRAY_TYPE:
+			return withId(new IntegerArrayType(), node);
+		case FLOAT_TYPE:
+			return withId(new FloatType(), node);
+		case FLOAT_ARRAY_TYPE:
+			return withId(new FloatArrayType(), node);
+		case BOOLEAN_TYPE:
+			return withId(new BooleanType(), node);
+		case BOOLEAN_ARRAY_TYPE:
+			return withId(new BooleanArrayType(), node);
+		case CHAR_TYPE:
+			return withId(new CharType(), node);
+		case CHAR_ARRAY_TYPE:
+			return withId(new CharArrayType(), node);
+		case IF:
+			return withId(new If((Exp) first, (Statement) second, (Statement) values[from + 2]), node);
+		case WHILE:
+			return withId(new While((Exp) first, (Statement) second), node);
+		case ASSIGN:
+			return withId(new Assign((Identifier) first, (Exp) second), node);
+		case ARRAY_ASSIGN:
+			return withId(new ArrayAssign((Identifier) first, (Exp) second, (Exp) values[from + 2]), node);
+		case AND:
+			return withId(new And((Exp) first, (Exp) second), node);
+		case OR:
+			return withId(new Or((Exp) first, (Exp) second), node);
+		case EQUAL:
+			return withId(new Equal((Exp) first, (Exp) second), node);
+		case NOT_EQUAL:
+			return withId(new NotEqual((Exp) first, (Exp) second), node);
+		case LESS_THAN:
+			return withId(new LessThan((Exp) first, (Exp) second), node);
+		case MORE_THAN:
+			return withId(new MoreThan((Exp) first, (Exp) second), node);
+		case LESS_THAN_EQUAL:
+			return withId(new LessThanEqual((Exp) first, (Exp) second), node);
+		case MORE_THAN_EQUAL:
+			return withId(new MoreThanEqual((Exp) first, (Exp) second), node);
+		case PLUS:
+			return withId(new Plus((Exp) first, (Exp) second), node);
+		case MINUS:
+			return withId(new Minus((Exp) first, (Exp) second), node);
+		case TIMES:
+			return withId(new Times((Exp) first, (Exp) second), node);
+		case DIVIDE:
+			return withId(new Divide((Exp) first, (Exp) second), node);
+		case MODULES:
+			return withId(new Modules((Exp) first, (Exp) second), node);
+		case ARRAY_LOOKUP:
+			return withId(new ArrayLookup((Exp) first, (Exp) second), node);
+		case INT_LITERAL:
+			return withId(new IntegerLiteral(getIntVal(node)), node);
+		case FLOAT_LITERAL:
+			return withId(new FloatLiteral(getFloatVal(node)), node);
+		case BOOLEAN_LITERAL:
+			return withId(new BooleanLiteral(getBooleanVal(node)), node);
+		case CHAR_LITERAL:
+			return withId(new CharLiteral(getCharVal(node)), node);
+		case IDENTIFIER_EXP:
+			return withId(new IdentifierExp(getName(node)), node);
+		case NOT:
+			return withId(new Not((Exp) first), node);
+		case NEGATIVE:
+			return withId(new Negative((Exp) first), node);
+		default:
+			return withId(new Identifier(getName(node)), node);
+		}
+	}
+
+	// object nodes built from the flat tree take over the flat node id
+	private static <T extends Node> T withId(T object, int node) {
+		object.setNodeId(node);
+		return object;
+	}
+}
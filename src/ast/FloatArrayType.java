@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class FloatArrayType implements Type{
+public class FloatArrayType extends Node implements Type {
 	public void accept(Visitor v) {
 		v.visit(this);
 	}
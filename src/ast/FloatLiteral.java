@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class FloatLiteral implements Exp{
+public class FloatLiteral extends Node implements Exp {
 	private float value;
 
 	public FloatLiteral(float value) {
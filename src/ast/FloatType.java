@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class FloatType implements Type{
+public class FloatType extends Node implements Type {
 	public void accept(Visitor v) {
 		v.visit(this);
 	}
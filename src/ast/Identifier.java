@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class Identifier {
+public class Identifier extends Node {
 	private String name;
 	
 	public Identifier(String name) {
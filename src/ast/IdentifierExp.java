@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class IdentifierExp implements Exp {
+public class IdentifierExp extends Node implements Exp {
 	private String name;
 	
 	public IdentifierExp(String name) {
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class IdentifierType implements Type {
+public class IdentifierType extends Node implements Type {
 	private String name;
 	
 	public IdentifierType(String name) {
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class If implements Statement {
+public class If extends Node implements Statement {
 	private Exp condExp;
 	private Statement trueStm, falseStm;
 	
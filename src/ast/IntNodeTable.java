@@ -0,0 +1,36 @@
+package ast;
+
+import java.util.Arrays;
+
+// NodeTable for int values, nodes without a value read as the given default
+public class IntNodeTable {
+	private int[] values;
+	private int missing;
+
+	public IntNodeTable(int capacity, int missing) {
+		this.missing = missing;
+		values = new int[Math.max(capacity, 16)];
+		Arrays.fill(values, missing);
+	}
+
+	public int get(Node node) {
+		int id = NodeTable.id(node);
+		return id < values.length ? values[id] : missing;
+	}
+
+	public void put(Node node, int value) {
+		int id = NodeTable.id(node);
+
+		if (id >= values.length) {
+			int length = values.length;
+			values = Arrays.copyOf(values, Math.max(length * 2, id + 1));
+			Arrays.fill(values, length, values.length, missing);
+		}
+
+		values[id] = value;
+	}
+
+	public void clear() {
+		Arrays.fill(values, missing);
+	}
+}
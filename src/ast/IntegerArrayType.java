@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class IntegerArrayType implements Type {
+public class IntegerArrayType extends Node implements Type {
 	public void accept(Visitor v) {
 		v.visit(this);
 	}
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class IntegerLiteral implements Exp {
+public class IntegerLiteral extends Node implements Exp {
 	private int value;
 	
 	public IntegerLiteral(int value) {
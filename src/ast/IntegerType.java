@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class IntegerType implements Type {
+public class IntegerType extends Node implements Type {
 	public void accept(Visitor v) {
 		v.visit(this);
 	}
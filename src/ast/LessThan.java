@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class LessThan implements Exp {
+public class LessThan extends Node implements Exp {
 	private Exp lhs, rhs;
 	
 	public LessThan(Exp lhs, Exp rhs) {
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class LessThanEqual implements Exp{
+public class LessThanEqual extends Node implements Exp {
 	private Exp lhs, rhs;
 
 	public LessThanEqual(Exp lhs, Exp rhs) {
@@ -0,0 +1,36 @@
+package ast;
+
+import java.util.Arrays;
+
+// NodeTable for long values, nodes without a value read as the given default
+public class LongNodeTable {
+	private long[] values;
+	private long missing;
+
+	public LongNodeTable(int capacity, long missing) {
+		this.missing = missing;
+		values = new long[Math.max(capacity, 16)];
+		Arrays.fill(values, missing);
+	}
+
+	public long get(Node node) {
+		int id = NodeTable.id(node);
+		return id < values.length ? values[id] : missing;
+	}
+
+	public void put(Node node, long value) {
+		int id = NodeTable.id(node);
+
+		if (id >= values.length) {
+			int length = values.length;
+			values = Arrays.copyOf(values, Math.max(length * 2, id + 1));
+			Arrays.fill(values, length, values.length, missing);
+		}
+
+		values[id] = value;
+	}
+
+	public void clear() {
+		Arrays.fill(values, missing);
+	}
+}
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class Modules implements Exp{
+public class Modules extends Node implements Exp {
 	private Exp lhs, rhs;
 
 	public Modules(Exp lhs, Exp rhs) {
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class MoreThan implements Exp{
+public class MoreThan extends Node implements Exp {
 	private Exp lhs, rhs;
 
 	public MoreThan(Exp lhs, Exp rhs) {
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class MoreThanEqual implements Exp{
+public class MoreThanEqual extends Node implements Exp {
 	private Exp lhs, rhs;
 
 	public MoreThanEqual(Exp lhs, Exp rhs) {
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class Negative implements Exp{
+public class Negative extends Node implements Exp {
 	private Exp exp;
 
 	public Negative(Exp exp) {
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class NewArray implements Exp {
+public class NewArray extends Node implements Exp {
 	private Exp arraySize;
 	
 	public NewArray(Exp arraySize) {
@@ -0,0 +1,22 @@
+package ast;
+
+/*
+ * Identity of a syntax tree node. The parser numbers the Exp, Statement,
+ * Type and Identifier nodes it creates densely from 0, so per node results
+ * can be kept in a NodeTable instead of a map keyed by the node.
+ */
+public abstract class Node {
+	public static final int NO_ID = -1;
+
+	private int id = NO_ID;
+
+	// id of this node, NO_ID if it was not created by a parser
+	public int getNodeId() {
+		return id;
+	}
+
+	// assigned once by the code that builds the tree
+	public void setNodeId(int id) {
+		this.id = id;
+	}
+}
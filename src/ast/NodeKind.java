@@ -0,0 +1,56 @@
+package ast;
+
+// node kinds of a FlatAst, with the meaning of first/second/third and payload
+public enum NodeKind {
+	PROGRAM, // first: Declarations, second: StatementList
+	DECLARATIONS, // list of VarDeclList
+	VAR_DECL_LIST, // list of VarDecl
+	VAR_DECL, // first: Type, second: Identifier
+	STATEMENT_LIST, // list of Statement
+
+	// types, no children
+	INT_TYPE,
+	INT_ARRAY_TYPE,
+	FLOAT_TYPE,
+	FLOAT_ARRAY_TYPE,
+	BOOLEAN_TYPE,
+	BOOLEAN_ARRAY_TYPE,
+	CHAR_TYPE,
+	CHAR_ARRAY_TYPE,
+
+	// statements
+	BLOCK, // list of Statement
+	IF, // first: condition, second: true statement, third: false statement
+	WHILE, // first: condition, second: loop statement
+	ASSIGN, // first: Identifier, second: value
+	ARRAY_ASSIGN, // first: Identifier, second: index, third: value
+
+	// binary expressions, first: lhs, second: rhs
+	AND,
+	OR,
+	EQUAL,
+	NOT_EQUAL,
+	LESS_THAN,
+	MORE_THAN,
+	LESS_THAN_EQUAL,
+	MORE_THAN_EQUAL,
+	PLUS,
+	MINUS,
+	TIMES,
+	DIVIDE,
+	MODULES,
+	ARRAY_LOOKUP, // first: array, second: index
+
+	// leaf expressions, value in the payload
+	INT_LITERAL,
+	FLOAT_LITERAL, // raw float bits
+	BOOLEAN_LITERAL, // 1 for true
+	CHAR_LITERAL,
+	IDENTIFIER_EXP, // name index
+
+	// unary expressions, first: operand
+	NOT,
+	NEGATIVE,
+
+	IDENTIFIER // name index
+}
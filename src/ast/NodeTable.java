@@ -0,0 +1,43 @@
+package ast;
+
+import java.util.Arrays;
+
+/*
+ * Per node values indexed by node id. Sized with the node count of the
+ * parser the tree came from, lookups are a bounds check and an array read.
+ * IntNodeTable and LongNodeTable hold primitive values without boxing.
+ */
+public class NodeTable<V> {
+	private Object[] values;
+
+	public NodeTable(int capacity) {
+		values = new Object[Math.max(capacity, 16)];
+	}
+
+	// value stored for the node, null if none
+	@SuppressWarnings("unchecked")
+	public V get(Node node) {
+		int id = id(node);
+		return id < values.length ? (V) values[id] : null;
+	}
+
+	public void put(Node node, V value) {
+		int id = id(node);
+
+		if (id >= values.length)
+			values = Arrays.copyOf(values, Math.max(values.length * 2, id + 1));
+
+		values[id] = value;
+	}
+
+	public void clear() {
+		Arrays.fill(values, null);
+	}
+
+	static int id(Node node) {
+		if (node.getNodeId() == Node.NO_ID)
+			throw new IllegalArgumentException("Node " + node + " has no id");
+
+		return node.getNodeId();
+	}
+}
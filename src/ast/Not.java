@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class Not implements Exp {
+public class Not extends Node implements Exp {
 	private Exp exp;
 	
 	public Not(Exp exp) {
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class NotEqual implements Exp{
+public class NotEqual extends Node implements Exp {
 	private Exp lhs, rhs;
 
 	public NotEqual(Exp lhs, Exp rhs) {
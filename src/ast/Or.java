@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class Or implements Exp {
+public class Or extends Node implements Exp {
 	private Exp lhs, rhs;
 
 	public Or(Exp lhs, Exp rhs) {
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class Plus implements Exp {
+public class Plus extends Node implements Exp {
 	private Exp lhs, rhs;
 	
 	public Plus(Exp lhs, Exp rhs) {
@@ -1,13 +1,10 @@
 package ast;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class StatementList {
-	private List<Statement> list;
+	private BlockList<Statement> list;
 	
 	public StatementList() {
-		list = new ArrayList<Statement>();
+		list = new BlockList<Statement>();
 	}
 	
 	public void addElement(Statement stm) {
@@ -21,4 +18,9 @@ public class StatementList {
 	public int size() {
 		return list.size();
 	}
+
+	// replace the statements [from, to) with the ones of stms
+	public void replace(int from, int to, StatementList stms) {
+		list.replace(from, to, stms.list);
+	}
 }
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class True implements Exp {
+public class True extends Node implements Exp {
 	public void accept(Visitor v) {
 		v.visit(this);
 	}
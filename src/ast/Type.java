@@ -4,4 +4,5 @@ import visitor.Visitor;
 
 public interface Type {
 	public void accept(Visitor v);
+	public int getNodeId();
 }
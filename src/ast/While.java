@@ -2,7 +2,7 @@ package ast;
 
 import visitor.Visitor;
 
-public class While implements Statement {
+public class While extends Node implements Statement {
 	private Exp condExp;
 	private Statement stm;
 	
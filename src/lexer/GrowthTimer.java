@@ -0,0 +1,59 @@
+package lexer;
+
+import java.io.IOException;
+
+/*
+ * Times a run over a small and a large input for the bounds checks such as
+ * TestLexerBounds and TestParserBounds. Each time is the best of three,
+ * taken after warming up on the small input. A linear run grows about as
+ * much as the input; MAX_GROWTH times that allows for timer noise, JIT and
+ * GC, while a quadratic run would grow by the square of the input.
+ */
+public class GrowthTimer {
+	public static final double MAX_GROWTH = 3;
+	private static final long MIN_TIME = 50000000; // large runs below this are too short to judge, in nanoseconds
+
+	public interface Run {
+		void run(String input) throws IOException;
+	}
+
+	private final int smallLength;
+	private final int largeLength;
+	private final long smallTime; // in nanoseconds
+	private final long largeTime;
+
+	public GrowthTimer(Run run, String small, String large) throws IOException {
+		for (int i = 0; i < 3; i++)
+			run.run(small);
+
+		smallLength = small.length();
+		largeLength = large.length();
+		smallTime = time(run, small);
+		largeTime = time(run, large);
+	}
+
+	// best of three, in nanoseconds
+	private static long time(Run run, String input) throws IOException {
+		long best = Long.MAX_VALUE;
+
+		for (int i = 0; i < 3; i++) {
+			long start = System.nanoTime();
+			run.run(input);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	public double getGrowth() {
+		return (double) largeTime / Math.max(smallTime, 1);
+	}
+
+	// true if the time grows much faster than the input
+	public boolean isSuperlinear() {
+		return getGrowth() > MAX_GROWTH * largeLength / smallLength && largeTime > MIN_TIME;
+	}
+
+	public String toString() {
+		return largeTime / 1000000 + "ms, " + String.format("%.1f", getGrowth()) + "x the time of " + smallLength + " chars";
+	}
+}
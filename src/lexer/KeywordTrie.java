@@ -0,0 +1,85 @@
+package lexer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+/*
+ * Recognizes reserved words directly against a char buffer. Every keyword
+ * of the language is lower case, so each trie node keeps one child slot per
+ * letter 'a'..'z' in a flat int array and a lookup never allocates.
+ */
+final class KeywordTrie {
+	private static final int ALPHABET = 26;
+
+	private int[] children; // children[node * ALPHABET + letter], 0 = no child
+	private TokenType[] types; // token type accepted at a node, null if none
+	private int nodes = 1; // node 0 is the root
+	private int maxLength;
+
+	KeywordTrie(Map<String, TokenType> words) {
+		children = new int[ALPHABET * 64];
+		types = new TokenType[64];
+
+		for (Map.Entry<String, TokenType> word : words.entrySet())
+			add(word.getKey(), word.getValue());
+	}
+
+	private void add(String word, TokenType type) {
+		int node = 0;
+
+		for (int i = 0; i < word.length(); i++) {
+			int slot = node * ALPHABET + (word.charAt(i) - 'a');
+
+			if (children[slot] == 0) {
+				if (nodes == types.length) {
+					types = Arrays.copyOf(types, nodes * 2);
+					children = Arrays.copyOf(children, nodes * 2 * ALPHABET);
+				}
+				children[slot] = nodes++;
+			}
+			node = children[slot];
+		}
+
+		types[node] = type;
+		maxLength = Math.max(maxLength, word.length());
+	}
+
+	// token type of the keyword in chars[start, start + length), null for plain identifiers
+	TokenType match(char[] chars, int start, int length) {
+		if (length > maxLength)
+			return null;
+
+		int node = 0;
+		for (int i = start; i < start + length; i++) {
+			int letter = chars[i] - 'a';
+
+			if (letter < 0 || letter >= ALPHABET)
+				return null;
+
+			node = children[node * ALPHABET + letter];
+			if (node == 0)
+				return null;
+		}
+		return types[node];
+	}
+
+	// same as above for a mapped ASCII source
+	TokenType match(ByteBuffer bytes, int start, int length) {
+		if (length > maxLength)
+			return null;
+
+		int node = 0;
+		for (int i = start; i < start + length; i++) {
+			int letter = bytes.get(i) - 'a';
+
+			if (letter < 0 || letter >= ALPHABET)
+				return null;
+
+			node = children[node * ALPHABET + letter];
+			if (node == 0)
+				return null;
+		}
+		return types[node];
+	}
+}
@@ -1,15 +1,42 @@
 package lexer;
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 public class Lexer {
-    private BufferedReader stream;
-    private Token nextToken;
+    private char[] buffer; // source window being scanned
+    private boolean ownsBuffer; // buffer was allocated by this lexer, so reset() may overwrite it
+    private ByteBuffer bytes; // mapped ASCII source, used instead of buffer when set
+    private int origin; // offset the window starts at
+    private int position; // offset of the char after nextChar
+    private int limit; // end of the source window
+
+    // ring buffer of scanned tokens that have not been handed out yet or are kept for rewind()
+    public final static int LOOKAHEAD = 16;
+    private Token[] lookahead = new Token[LOOKAHEAD];
+    private int read; // tokens handed out by getToken()
+    private int scanned; // tokens scanned into the ring
+    private int mark = -1; // read count to rewind to, -1 if no mark is set
     private int nextChar;
+
+    // position and value of the last scanned token
+    private int tokenStart;
+    private int tokenLength;
+    private int tokenLine;
+    private int tokenColumn;
+    private int literal; // int, char and boolean values as ints, floats as raw bits
     private int lineNumber = 1;
     private int columnNumber = 1;
 
@@ -18,6 +45,13 @@ public class Lexer {
     private final static Map<String, TokenType> operators;
     private int errors;
 
+    // lookup tables derived from the maps above, used by the scanner
+    private final static byte OTHER = 0, LETTER = 1, DIGIT = 2, WHITESPACE = 3;
+    private final static byte[] charClasses = new byte[128];
+    private final static TokenType[] punctuationTypes = new TokenType[128];
+    private final static KeywordTrie keywords;
+    private final static float[] floatPowersOfTen = { 1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f };
+
     static {
         reservedWords = new HashMap<String, TokenType>();
         reservedWords.put("int", TokenType.INT);
@@ -56,29 +90,164 @@ public class Lexer {
         operators.put("*", TokenType.TIMES);
         operators.put("/", TokenType.DIV);
         operators.put("%", TokenType.MOD);
+
+        for (char c = 0; c < 128; c++) {
+            if (Character.isLetter(c))
+                charClasses[c] = LETTER;
+            else if (Character.isDigit(c))
+                charClasses[c] = DIGIT;
+            else if (Character.isWhitespace(c))
+                charClasses[c] = WHITESPACE;
+            else
+                charClasses[c] = OTHER;
+        }
+
+        for (Map.Entry<Character, TokenType> entry : punctuation.entrySet())
+            punctuationTypes[entry.getKey()] = entry.getValue();
+
+        Map<String, TokenType> words = new HashMap<String, TokenType>(reservedWords);
+        words.put("true", TokenType.BOOLEAN_CONST);
+        words.put("false", TokenType.BOOLEAN_CONST);
+        keywords = new KeywordTrie(words);
     }
 
-    public Lexer(Reader reader) {
-        this.stream = new BufferedReader(reader);
-        nextChar = getChar();
+    // ASCII chars are classified by table, everything else (including -1) by Character
+    private static boolean isLetter(int c) {
+        return c < 128 && c >= 0 ? charClasses[c] == LETTER : Character.isLetter(c);
+    }
+
+    // numeric literals are ASCII only; other Unicode digits only occur inside identifiers
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetterOrDigit(int c) {
+        return c < 128 && c >= 0 ? charClasses[c] == LETTER || charClasses[c] == DIGIT : Character.isLetterOrDigit(c);
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c < 128 && c >= 0 ? charClasses[c] == WHITESPACE : Character.isWhitespace(c);
+    }
+
+    public Lexer(Reader reader) throws IOException {
+        this(readFully(reader));
+        ownsBuffer = true;
     }
 
     public Lexer(String content) {
-        this(new StringReader(content));
+        this(content.toCharArray());
+        ownsBuffer = true;
+    }
+
+    public Lexer(char[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+
+    // scan the chars in buffer[offset, offset + length) without copying them
+    public Lexer(char[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.origin = offset;
+        this.position = offset;
+        this.limit = offset + length;
+        nextChar = getChar();
+    }
+
+    // scan the ASCII bytes of a file in place through a read-only memory mapping
+    public Lexer(Path path) throws IOException {
+        this(map(path));
+    }
+
+    private Lexer(ByteBuffer bytes) {
+        this.bytes = bytes;
+        this.origin = 0;
+        this.position = 0;
+        this.limit = bytes.limit();
+        nextChar = getChar();
+    }
+
+    /*
+     * Start over on new content, reusing the char buffer when this lexer
+     * allocated it and it is large enough. A buffer passed in by the caller,
+     * or shared with another lexer, is never written to. Token buffers
+     * produced before the reset read identifier names from this lexer and
+     * must not be used afterwards.
+     */
+    public void reset(String content) {
+        if (!ownsBuffer || buffer.length < content.length()) {
+            buffer = new char[content.length()];
+            ownsBuffer = true;
+        }
+
+        content.getChars(0, content.length(), buffer, 0);
+        bytes = null;
+        origin = 0;
+        position = 0;
+        limit = content.length();
+        Arrays.fill(lookahead, null);
+        read = 0;
+        scanned = 0;
+        mark = -1;
+        lineNumber = 1;
+        columnNumber = 1;
+        errors = 0;
+        nextChar = getChar();
     }
 
+    // lexer over source[from, to) of another lexer, where from is the start of a line
+    private Lexer(Lexer source, int from, int to) {
+        this.buffer = source.buffer;
+        this.bytes = source.bytes;
+        this.origin = from;
+        this.position = from;
+        this.limit = to;
+        nextChar = getChar();
+
+        // a tab right after a newline is counted as if the newline had just been skipped
+        if (from > source.origin && nextChar == '\t')
+            columnNumber += 3;
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("File too large to map: " + path);
+
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    // drain a reader into a single char array
+    private static char[] readFully(Reader reader) throws IOException {
+        char[] chars = new char[8192];
+        int length = 0;
+        int read;
+
+        while ((read = reader.read(chars, length, chars.length - length)) != -1) {
+            length += read;
+            if (length == chars.length)
+                chars = Arrays.copyOf(chars, chars.length * 2);
+        }
+        return Arrays.copyOf(chars, length);
+    }
+
+    /*
+     * Number of literals that look valid but have no value: integers out of
+     * the int range and floats that cannot be parsed. Other UNKNOWN tokens,
+     * like a lone '&' or an unterminated char literal, are not counted here;
+     * the parser reports them when it meets them.
+     */
     public int getErrors() {
         return errors;
     }
 
     private int getChar() {
-        try {
-            return stream.read();
-        } catch (IOException e) {
-            System.err.print(e.getMessage());
-            System.err.println("IOException occurred in Lexer::getChar()");
-            return -1;
-        }
+        if (position < limit)
+            return bytes == null ? buffer[position++] : bytes.get(position++) & 0xFF;
+
+        // step past the window once so that position - 1 stays the offset of nextChar
+        position = limit + 1;
+        return -1;
     }
 
     private boolean skipNewline() {
@@ -101,20 +270,346 @@ public class Lexer {
     }
 
     public Token peek() throws IOException {
-        if (nextToken == null)
-            nextToken = getToken();
+        return peek(1);
+    }
+
+    // the k-th token that getToken() will return, 1 <= k <= LOOKAHEAD
+    public Token peek(int k) throws IOException {
+        if (k < 1 || k > LOOKAHEAD)
+            throw new IllegalArgumentException("Lookahead " + k + " outside of 1.." + LOOKAHEAD);
+
+        while (scanned < read + k)
+            fill();
+
+        return lookahead[(read + k - 1) % LOOKAHEAD];
+    }
 
-        return nextToken;
+    // remember the current position so that rewind() can return to it
+    public void mark() {
+        mark = read;
+    }
+
+    // return to the marked position, handing out the same tokens again
+    public void rewind() {
+        if (mark < 0)
+            throw new IllegalStateException("rewind() without mark()");
+
+        read = mark;
+        mark = -1;
+    }
+
+    // drop the mark once speculation succeeded
+    public void release() {
+        mark = -1;
+    }
+
+    // scan one more token into the ring
+    private void fill() {
+        int oldest = mark >= 0 ? mark : read;
+
+        if (scanned - oldest == LOOKAHEAD)
+            throw new IllegalStateException("Lookahead exceeds " + LOOKAHEAD + " tokens");
+
+        TokenType type = scan();
+        lookahead[scanned % LOOKAHEAD] = new Token(type, attribute(type), tokenLine, tokenColumn);
+        scanned++;
+    }
+
+    // cursor over the tokens of getToken(), positioned on the first one
+    public TokenCursor cursor() throws IOException {
+        return new LexerCursor(this);
     }
 
     public Token getToken() throws IOException {
-        if (nextToken != null) {
-            Token token = nextToken;
-            nextToken = null;
-            return token;
+        if (read < scanned)
+            return lookahead[read++ % LOOKAHEAD];
+
+        // nothing to replay, skip the ring unless a mark has to keep the token
+        if (mark < 0) {
+            TokenType type = scan();
+            read++;
+            scanned++;
+            return new Token(type, attribute(type), tokenLine, tokenColumn);
         }
 
-        while (Character.isWhitespace(nextChar)) {
+        fill();
+        return lookahead[read++ % LOOKAHEAD];
+    }
+
+    // scan the whole input into a packed token buffer, EOF token included
+    public TokenBuffer tokenize() {
+        if (read != scanned)
+            throw new IllegalStateException("tokenize() called after peek()");
+
+        TokenBuffer tokens = new TokenBuffer(this, (limit - position) / 3 + 16);
+        TokenType type;
+        do {
+            type = scan();
+            tokens.add(type, tokenStart, tokenLength, tokenLine, tokenColumn, literal);
+        } while (type != TokenType.EOF);
+
+        return tokens;
+    }
+
+    /*
+     * Scan the whole input on a ForkJoinPool. No token spans a line, so the
+     * input is cut after a newline roughly every chunkSize chars, each chunk is
+     * tokenized by its own lexer, and the chunk buffers are joined with their
+     * line numbers shifted. The result is the same as tokenize().
+     */
+    public TokenBuffer tokenizeParallel(ForkJoinPool pool, int chunkSize) {
+        if (scanned != 0 || position - 1 != origin)
+            throw new IllegalStateException("tokenizeParallel() called on a used lexer");
+
+        List<ChunkTask> chunks = new ArrayList<ChunkTask>();
+        int from = origin;
+        while (from < limit) {
+            int to = Math.min(from + Math.max(chunkSize, 1), limit);
+
+            while (to < limit && charAt(to - 1) != '\n')
+                to++;
+
+            chunks.add(new ChunkTask(from == origin ? this : new Lexer(this, from, to), to));
+            from = to;
+        }
+
+        if (chunks.isEmpty())
+            return tokenize();
+
+        // the first chunk reuses this lexer, so it is bounded now that the others are built
+        limit = chunks.get(0).end;
+        pool.invoke(new RecursiveTask<Void>() {
+            protected Void compute() {
+                ForkJoinTask.invokeAll(chunks);
+                return null;
+            }
+        });
+
+        limit = chunks.get(chunks.size() - 1).end;
+        TokenBuffer tokens = new TokenBuffer(new PieceTable(this, origin, limit - origin), origin);
+        int lineOffset = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            ChunkTask task = chunks.get(i);
+            int last = task.tokens.size() - 1; // EOF of the chunk
+
+            tokens.append(task.tokens, 0, i == chunks.size() - 1 ? last + 1 : last, task.lexer.origin - origin, lineOffset, -1, 0);
+            lineOffset += task.tokens.getLineNumber(last) - 1;
+
+            // the first chunk counted its errors into this lexer already
+            if (i > 0)
+                errors += task.lexer.errors;
+        }
+
+        lineNumber = tokens.getLineNumber(tokens.size() - 1);
+        return tokens;
+    }
+
+    public TokenBuffer tokenizeParallel() {
+        return tokenizeParallel(ForkJoinPool.commonPool(), 1 << 20);
+    }
+
+    // tokenizes one chunk of a parallel scan
+    private static class ChunkTask extends RecursiveTask<TokenBuffer> {
+        private static final long serialVersionUID = 1L;
+
+        private Lexer lexer;
+        private int end;
+        private TokenBuffer tokens;
+
+        ChunkTask(Lexer lexer, int end) {
+            this.lexer = lexer;
+            this.end = end;
+        }
+
+        protected TokenBuffer compute() {
+            tokens = lexer.tokenize();
+            return tokens;
+        }
+    }
+
+    private static int digitValue(int c) {
+        return c - '0';
+    }
+
+    /*
+     * Store the float value of the literal at [start, start + length) whose
+     * digits, ignoring the dot, read as mantissa. A mantissa up to 2^24 and a
+     * power of ten up to 10^10 are both exact floats, so a single float division
+     * gives the correctly rounded value; anything else is parsed from the text.
+     * Returns false if the literal cannot be parsed.
+     */
+    private boolean floatLiteral(long mantissa, int fractionDigits, int start, int length) {
+        if (mantissa <= 1 << 24 && fractionDigits < floatPowersOfTen.length) {
+            literal = Float.floatToRawIntBits(mantissa / floatPowersOfTen[fractionDigits]);
+            return true;
+        }
+
+        try {
+            literal = Float.floatToRawIntBits(Float.parseFloat(lexeme(start, length)));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // number of digits of a char code
+    private static int decimalWidth(int c) {
+        return c < 10 ? 1 : c < 100 ? 2 : c < 1000 ? 3 : c < 10000 ? 4 : 5;
+    }
+
+    int charAt(int offset) {
+        return bytes == null ? buffer[offset] : bytes.get(offset) & 0xFF;
+    }
+
+    // copy count source chars starting at from into chars[to, to + count)
+    void copyText(int from, int count, char[] chars, int to) {
+        if (bytes == null) {
+            System.arraycopy(buffer, from, chars, to, count);
+            return;
+        }
+
+        for (int i = 0; i < count; i++)
+            chars[to + i] = (char) (bytes.get(from + i) & 0xFF);
+    }
+
+    /*
+     * Apply a text edit to the source of a token stream and return the stream
+     * of the edited text. Offsets are relative to the start of the source.
+     * Scanning restarts at the beginning of the line holding the last token
+     * that starts before the edit, and stops as soon as a new token starts
+     * where a shifted old token does, or at the first line break after the
+     * edit, where no token is open; from there on both streams agree.
+     *
+     * Only the lines of the edit are copied and scanned. The new text is a
+     * PieceTable sharing the old one, and the new stream shares the chunks
+     * of the old tokens, moving the ones after the edit by the shifts of
+     * their runs. Both grow by a few pieces and runs per edit, which bounds
+     * the rest of the work; the previous stream stays valid.
+     */
+    public static TokenBuffer relex(TokenBuffer previous, int offset, int removedLength, String insertedText) {
+        PieceTable text = previous.getText();
+        int length = text.length();
+
+        if (offset < 0 || removedLength < 0 || offset + removedLength > length)
+            throw new IndexOutOfBoundsException("Edit [" + offset + ", " + (offset + removedLength) + ") outside of source of length " + length);
+
+        int editEnd = offset + insertedText.length(); // end of the edit in the new text
+        int delta = insertedText.length() - removedLength;
+
+        // the text before the edit is unchanged, so its lines are those of the old text
+        int first = previous.lastStartingBefore(offset);
+        int lineStart = 0;
+        int line = 1;
+
+        if (first >= 0) {
+            lineStart = text.lineStart(previous.getOffset(first));
+
+            while (first > 0 && previous.getOffset(first - 1) >= lineStart)
+                first--;
+            line = previous.getLineNumber(first);
+        } else {
+            first = 0;
+        }
+
+        // copy the edited lines, from lineStart to the first line break after the edit
+        int oldEnd = text.nextLine(offset + removedLength);
+        char[] window = new char[oldEnd + delta - lineStart];
+        text.getChars(lineStart, offset, window, 0);
+        insertedText.getChars(0, insertedText.length(), window, offset - lineStart);
+        text.getChars(offset + removedLength, oldEnd, window, editEnd - lineStart);
+
+        Lexer lexer = new Lexer(window);
+        lexer.lineNumber = line;
+
+        // a tab right after a newline is counted as if the newline had just been skipped
+        if (lineStart > 0 && lexer.nextChar == '\t')
+            lexer.columnNumber += 3;
+
+        TokenBuffer tokens = new TokenBuffer(text.replace(lineStart, oldEnd, lexer, 0, window.length), 0);
+        tokens.append(previous, 0, first, 0, 0, -1, 0);
+        tokens.startChunk(lexer, lineStart, 16);
+        int next = first; // first old token that may still line up with the new stream
+
+        TokenType type;
+        do {
+            type = lexer.scan();
+            int start = lexer.tokenStart + lineStart;
+
+            // the end of the window is a line start, the old tokens after it only move down
+            if (type == TokenType.EOF && oldEnd < length) {
+                int lineShift = lexer.lineNumber - line - text.lineBreaks(lineStart, oldEnd);
+
+                while (next < previous.size() && previous.getOffset(next) + delta < start)
+                    next++;
+                tokens.append(previous, next, previous.size(), delta, lineShift, -1, 0);
+                return tokens;
+            }
+
+            if (start >= editEnd) {
+                while (next < previous.size() && previous.getOffset(next) + delta < start)
+                    next++;
+
+                if (next < previous.size() && previous.getOffset(next) + delta == start) {
+                    int lineShift = lexer.tokenLine - previous.getLineNumber(next);
+                    int columnShift = lexer.tokenColumn - previous.getColumnNumber(next);
+
+                    tokens.append(previous, next, previous.size(), delta, lineShift, previous.getLineNumber(next), columnShift);
+                    return tokens;
+                }
+            }
+
+            tokens.add(type, lexer.tokenStart, lexer.tokenLength, lexer.tokenLine, lexer.tokenColumn, lexer.literal);
+        } while (type != TokenType.EOF);
+
+        return tokens;
+    }
+
+    // build the attribute of the last scanned token
+    private TokenAttribute attribute(TokenType type) {
+        switch (type) {
+            case ID:
+                return new TokenAttribute(lexeme(tokenStart, tokenLength));
+            case INT_CONST:
+                return new TokenAttribute(literal);
+            case FLOAT_CONST:
+                return new TokenAttribute(Float.intBitsToFloat(literal));
+            case CHAR_CONST:
+                return new TokenAttribute((char) literal);
+            case BOOLEAN_CONST:
+                return new TokenAttribute(literal != 0);
+            default:
+                return new TokenAttribute();
+        }
+    }
+
+    int getOrigin() {
+        return origin;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    String lexeme(int start, int length) {
+        if (bytes == null)
+            return new String(buffer, start, length);
+
+        byte[] chars = new byte[length];
+        bytes.get(start, chars);
+        return new String(chars, StandardCharsets.ISO_8859_1);
+    }
+
+    // record the position of the scanned token and return its type
+    private TokenType token(TokenType type, int column) {
+        tokenLine = lineNumber;
+        tokenColumn = column;
+        tokenLength = position - 1 - tokenStart;
+        return type;
+    }
+
+    // scan the next token, leaving its position and value in the token fields
+    private TokenType scan() {
+        while (isWhitespace(nextChar)) {
             if (!skipNewline()) {
                 columnNumber++;
                 nextChar = getChar();
@@ -124,66 +619,88 @@ public class Lexer {
                 columnNumber += 3;
         }
 
-        if (Character.isLetter(nextChar)) {
-            String current = Character.toString((char) nextChar);
+        // lexemes are [start, position - 1) slices of the buffer
+        int start = position - 1;
+        tokenStart = start;
+
+        if (isLetter(nextChar)) {
             columnNumber++;
             nextChar = getChar();
 
-            while (Character.isLetterOrDigit(nextChar)) {
-                current += (char) nextChar;
+            while (isLetterOrDigit(nextChar)) {
                 columnNumber++;
                 nextChar = getChar();
             }
 
-            TokenType type = reservedWords.get(current);
-
-            if (type != null)
-                return new Token(type, new TokenAttribute(), lineNumber, columnNumber - current.length());
+            int length = position - 1 - start;
+            TokenType type = bytes == null ? keywords.match(buffer, start, length) : keywords.match(bytes, start, length);
 
-            if (current.equals("true"))
-                return new Token(TokenType.BOOLEAN_CONST, new TokenAttribute(true), lineNumber, columnNumber - current.length());
-            else if (current.equals("false"))
-                return new Token(TokenType.BOOLEAN_CONST, new TokenAttribute(false), lineNumber, columnNumber - current.length());
+            // true and false are the only keywords that are literals
+            if (type == TokenType.BOOLEAN_CONST)
+                literal = length == 4 ? 1 : 0;
 
-            return new Token(TokenType.ID, new TokenAttribute(current), lineNumber, columnNumber - current.length());
+            return token(type != null ? type : TokenType.ID, columnNumber - length);
         }
 
-        if (Character.isDigit(nextChar)) {
-            String numString = Character.toString((char) nextChar);
-            columnNumber++;
-            nextChar = getChar();
+        if (isDigit(nextChar)) {
+            // value of the digits, accumulation stops once it leaves the int range
+            long value = 0;
 
-            while (Character.isDigit(nextChar)) {
-                numString += (char) nextChar;
+            do {
+                if (value <= Integer.MAX_VALUE)
+                    value = value * 10 + digitValue(nextChar);
                 columnNumber++;
                 nextChar = getChar();
-            }
+            } while (isDigit(nextChar));
+
+            int length = position - 1 - start;
 
             if (nextChar == '.') {
                 nextChar = getChar();
                 columnNumber++;
 
-                if (Character.isDigit(nextChar)) {
-                    numString += '.';
-                    while (Character.isDigit(nextChar)) {
-                        numString += (char) nextChar;
+                if (isDigit(nextChar)) {
+                    // keep accumulating the fraction digits into the same integer mantissa
+                    int fractionDigits = 0;
+
+                    do {
+                        if (value <= Integer.MAX_VALUE) {
+                            value = value * 10 + digitValue(nextChar);
+                            fractionDigits++;
+                        }
                         columnNumber++;
                         nextChar = getChar();
-                    }
+                    } while (isDigit(nextChar));
 
-                    return new Token(TokenType.FLOAT_CONST, new TokenAttribute(Float.parseFloat(numString)), lineNumber, columnNumber - numString.length());
+                    length = position - 1 - start;
+
+                    if (!floatLiteral(value, fractionDigits, start, length)) {
+                        errors++;
+                        return token(TokenType.UNKNOWN, columnNumber - length);
+                    }
+                    return token(TokenType.FLOAT_CONST, columnNumber - length);
                 }
 
-                while (!Character.isWhitespace(nextChar)) {
+                // skip the rest of the malformed literal up to whitespace or end of input;
+                // the reported column counts each skipped char as the width of its decimal code
+                int width = length;
+                while (nextChar != -1 && !isWhitespace(nextChar)) {
                     columnNumber++;
-                    numString += nextChar;
+                    width += decimalWidth(nextChar);
                     nextChar = getChar();
                 }
 
-                return new Token(TokenType.UNKNOWN, new TokenAttribute(), lineNumber, columnNumber - numString.length() + 1);
+                return token(TokenType.UNKNOWN, columnNumber - width + 1);
+            }
+
+            // out of range integer literal
+            if (value > Integer.MAX_VALUE) {
+                errors++;
+                return token(TokenType.UNKNOWN, columnNumber - length);
             }
 
-            return new Token(TokenType.INT_CONST, new TokenAttribute(Integer.parseInt(numString)), lineNumber, columnNumber - numString.length());
+            literal = (int) value;
+            return token(TokenType.INT_CONST, columnNumber - length);
         }
 
         if (nextChar == '\'') {
@@ -191,23 +708,22 @@ public class Lexer {
             columnNumber++;
             if (Character.isAlphabetic(nextChar)) {
                 char current = (char) nextChar;
-                stream.mark(0);
                 nextChar = getChar();
                 columnNumber++;
 
                 if (nextChar == '\'') {
                     nextChar = getChar();
                     columnNumber++;
-                    return new Token(TokenType.CHAR_CONST, new TokenAttribute(current), lineNumber, columnNumber - 1);
+                    literal = current;
+                    return token(TokenType.CHAR_CONST, columnNumber - 1);
                 }
-                stream.reset();
             }
 
-            return new Token(TokenType.UNKNOWN, new TokenAttribute(), lineNumber, columnNumber - 1);
+            return token(TokenType.UNKNOWN, columnNumber - 1);
         }
 
         if (nextChar == -1)
-            return new Token(TokenType.EOF, new TokenAttribute(), lineNumber, columnNumber);
+            return token(TokenType.EOF, columnNumber);
 
         switch (nextChar) {
             case '&':
@@ -216,9 +732,9 @@ public class Lexer {
 
                 if (nextChar == '&') {
                     nextChar = getChar();
-                    return new Token(TokenType.AND, new TokenAttribute(), lineNumber, columnNumber - 2);
+                    return token(TokenType.AND, columnNumber - 2);
                 } else
-                    return new Token(TokenType.UNKNOWN, new TokenAttribute(), lineNumber, columnNumber - 1);
+                    return token(TokenType.UNKNOWN, columnNumber - 1);
 
             case '|':
                 columnNumber++;
@@ -226,9 +742,9 @@ public class Lexer {
 
                 if (nextChar == '|') {
                     nextChar = getChar();
-                    return new Token(TokenType.OR, new TokenAttribute(), lineNumber, columnNumber - 2);
+                    return token(TokenType.OR, columnNumber - 2);
                 } else
-                    return new Token(TokenType.UNKNOWN, new TokenAttribute(), lineNumber, columnNumber - 1);
+                    return token(TokenType.UNKNOWN, columnNumber - 1);
 
             case '=':
                 columnNumber++;
@@ -236,9 +752,9 @@ public class Lexer {
 
                 if (nextChar == '=') {
                     nextChar = getChar();
-                    return new Token(TokenType.EQ, new TokenAttribute(), lineNumber, columnNumber - 2);
+                    return token(TokenType.EQ, columnNumber - 2);
                 } else
-                    return new Token(TokenType.ASSIGN, new TokenAttribute(), lineNumber, columnNumber - 1);
+                    return token(TokenType.ASSIGN, columnNumber - 1);
 
             case '!':
                 columnNumber++;
@@ -246,9 +762,9 @@ public class Lexer {
 
                 if (nextChar == '=') {
                     nextChar = getChar();
-                    return new Token(TokenType.NEQ, new TokenAttribute(), lineNumber, columnNumber - 2);
+                    return token(TokenType.NEQ, columnNumber - 2);
                 } else
-                    return new Token(TokenType.NOT, new TokenAttribute(), lineNumber, columnNumber - 1);
+                    return token(TokenType.NOT, columnNumber - 1);
 
             case '<':
                 columnNumber++;
@@ -256,9 +772,9 @@ public class Lexer {
 
                 if (nextChar == '=') {
                     nextChar = getChar();
-                    return new Token(TokenType.LT_EQ, new TokenAttribute(), lineNumber, columnNumber - 2);
+                    return token(TokenType.LT_EQ, columnNumber - 2);
                 } else
-                    return new Token(TokenType.LT, new TokenAttribute(), lineNumber, columnNumber - 1);
+                    return token(TokenType.LT, columnNumber - 1);
 
             case '>':
                 columnNumber++;
@@ -266,43 +782,43 @@ public class Lexer {
 
                 if (nextChar == '=') {
                     nextChar = getChar();
-                    return new Token(TokenType.RT_EQ, new TokenAttribute(), lineNumber, columnNumber - 2);
+                    return token(TokenType.RT_EQ, columnNumber - 2);
                 } else
-                    return new Token(TokenType.RT, new TokenAttribute(), lineNumber, columnNumber - 1);
+                    return token(TokenType.RT, columnNumber - 1);
 
             case '+':
                 columnNumber++;
                 nextChar = getChar();
-                return new Token(TokenType.PLUS, new TokenAttribute(), lineNumber, columnNumber - 1);
+                return token(TokenType.PLUS, columnNumber - 1);
 
             case '-':
                 columnNumber++;
                 nextChar = getChar();
-                return new Token(TokenType.MINUS, new TokenAttribute(), lineNumber, columnNumber - 1);
+                return token(TokenType.MINUS, columnNumber - 1);
 
             case '*':
                 columnNumber++;
                 nextChar = getChar();
-                return new Token(TokenType.TIMES, new TokenAttribute(), lineNumber, columnNumber - 1);
+                return token(TokenType.TIMES, columnNumber - 1);
 
             case '/':
                 columnNumber++;
                 nextChar = getChar();
-                return new Token(TokenType.DIV, new TokenAttribute(), lineNumber, columnNumber - 1);
+                return token(TokenType.DIV, columnNumber - 1);
 
             case '%':
                 columnNumber++;
                 nextChar = getChar();
-                return new Token(TokenType.MOD, new TokenAttribute(), lineNumber, columnNumber - 1);
+                return token(TokenType.MOD, columnNumber - 1);
         }
 
-        TokenType type = punctuation.get((char) nextChar);
+        TokenType type = nextChar < 128 ? punctuationTypes[nextChar] : null;
         columnNumber++;
         nextChar = getChar();
 
         if (type != null)
-            return new Token(type, new TokenAttribute(), lineNumber, columnNumber - 1);
+            return token(type, columnNumber - 1);
 
-        return new Token(TokenType.UNKNOWN, new TokenAttribute(), lineNumber, columnNumber - 1);
+        return token(TokenType.UNKNOWN, columnNumber - 1);
     }
 }
@@ -0,0 +1,80 @@
+package lexer;
+
+import java.io.IOException;
+
+// TokenCursor over the tokens returned by Lexer.getToken()
+class LexerCursor implements TokenCursor {
+	private Lexer lexer;
+	private Token token;
+	private int index;
+	private Token markedToken;
+	private int markedIndex;
+
+	LexerCursor(Lexer lexer) throws IOException {
+		this.lexer = lexer;
+		this.token = lexer.getToken();
+	}
+
+	public TokenType getType() {
+		return token.getType();
+	}
+
+	public int getLineNumber() {
+		return token.getLineNumber();
+	}
+
+	public int getColumnNumber() {
+		return token.getColumnNumber();
+	}
+
+	public int getIntVal() {
+		return token.getAttribute().getIntVal();
+	}
+
+	public float getFloatVal() {
+		return token.getAttribute().getFloatVal();
+	}
+
+	public char getCharVal() {
+		return token.getAttribute().getCharVal();
+	}
+
+	public boolean getBooleanVal() {
+		return token.getAttribute().getBooleanVal();
+	}
+
+	public String getIdVal() {
+		return token.getAttribute().getIdVal();
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public void advance() throws IOException {
+		token = lexer.getToken();
+		index++;
+	}
+
+	public TokenType peek(int k) throws IOException {
+		return lexer.peek(k).getType();
+	}
+
+	public void mark() {
+		markedToken = token;
+		markedIndex = index;
+		lexer.mark();
+	}
+
+	public void rewind() {
+		lexer.rewind();
+		token = markedToken;
+		index = markedIndex;
+		markedToken = null;
+	}
+
+	public void release() {
+		lexer.release();
+		markedToken = null;
+	}
+}
@@ -0,0 +1,144 @@
+package lexer;
+
+/*
+ * Immutable text made of pieces of lexer sources. An edit builds a new table
+ * that shares the sources of the old one, so the unchanged text is never
+ * copied; the work is proportional to the number of pieces, which grows by
+ * at most two per edit. Offsets are relative to the start of the text.
+ */
+final class PieceTable {
+	private int pieces;
+	private Lexer[] sources;
+	private int[] sourceStarts; // source offset of the first char of each piece
+	private int[] ends; // text offset after the last char of each piece
+
+	PieceTable(Lexer source, int start, int length) {
+		this(1);
+		add(source, start, length);
+	}
+
+	private PieceTable(int capacity) {
+		sources = new Lexer[capacity];
+		sourceStarts = new int[capacity];
+		ends = new int[capacity];
+	}
+
+	// append length chars of source from start on, empty pieces are dropped
+	private void add(Lexer source, int start, int length) {
+		if (length == 0)
+			return;
+
+		sources[pieces] = source;
+		sourceStarts[pieces] = start;
+		ends[pieces] = length() + length;
+		pieces++;
+	}
+
+	int length() {
+		return pieces == 0 ? 0 : ends[pieces - 1];
+	}
+
+	// index of the piece holding offset, pieces if offset is the end of the text
+	private int piece(int offset) {
+		int low = 0, high = pieces;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (ends[middle] <= offset)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	private int pieceStart(int piece) {
+		return piece == 0 ? 0 : ends[piece - 1];
+	}
+
+	private int charAt(int piece, int offset) {
+		return sources[piece].charAt(sourceStarts[piece] + offset - pieceStart(piece));
+	}
+
+	// copy the chars [from, to) into chars from at on
+	void getChars(int from, int to, char[] chars, int at) {
+		for (int piece = piece(from); from < to; piece++) {
+			int count = Math.min(to, ends[piece]) - from;
+
+			sources[piece].copyText(sourceStarts[piece] + from - pieceStart(piece), count, chars, at);
+			from += count;
+			at += count;
+		}
+	}
+
+	// start of the line holding the char at offset
+	int lineStart(int offset) {
+		for (int piece = piece(offset - 1); offset > 0; offset--) {
+			if (offset - 1 < pieceStart(piece))
+				piece--;
+
+			int c = charAt(piece, offset - 1);
+			if (c == '\n' || c == '\r')
+				break;
+		}
+		return offset;
+	}
+
+	// offset after the first line break at or after offset, the length if there is none
+	int nextLine(int offset) {
+		int length = length();
+
+		for (int piece = piece(offset); offset < length; offset++) {
+			if (offset == ends[piece])
+				piece++;
+
+			int c = charAt(piece, offset);
+			if (c == '\n')
+				return offset + 1;
+			if (c == '\r')
+				return offset + 1 < length && charAt(offset + 1) == '\n' ? offset + 2 : offset + 1;
+		}
+		return length;
+	}
+
+	// line breaks in [from, to) as the lexer counts them, \r\n is one
+	int lineBreaks(int from, int to) {
+		int breaks = 0;
+		int previous = -1;
+
+		for (int piece = piece(from); from < to; from++) {
+			if (from == ends[piece])
+				piece++;
+
+			int c = charAt(piece, from);
+			if (c == '\r' || c == '\n' && previous != '\r')
+				breaks++;
+			previous = c;
+		}
+		return breaks;
+	}
+
+	int charAt(int offset) {
+		return charAt(piece(offset), offset);
+	}
+
+	// the text with [from, to) replaced by the chars [start, start + length) of source
+	PieceTable replace(int from, int to, Lexer source, int start, int length) {
+		PieceTable text = new PieceTable(pieces + 2);
+		int first = piece(from);
+		int last = piece(to);
+
+		for (int piece = 0; piece < first; piece++)
+			text.add(sources[piece], sourceStarts[piece], ends[piece] - pieceStart(piece));
+		if (first < pieces)
+			text.add(sources[first], sourceStarts[first], from - pieceStart(first));
+
+		text.add(source, start, length);
+
+		if (last < pieces)
+			text.add(sources[last], sourceStarts[last] + to - pieceStart(last), ends[last] - to);
+		for (int piece = last + 1; piece < pieces; piece++)
+			text.add(sources[piece], sourceStarts[piece], ends[piece] - pieceStart(piece));
+		return text;
+	}
+}
@@ -1,14 +1,37 @@
 package lexer;
 
-import java.io.StringReader;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 public class TestLexer {
+    // lexer reused by the requests served on a thread
+    private static final ThreadLocal<Lexer> lexers = new ThreadLocal<Lexer>();
+
+    public static void main(String[] args) throws IOException {
+        System.out.print(analyzeFile(Paths.get(args[0])));
+    }
+
     public static String analyzeFile(String fileContent) throws IOException {
+        Lexer lexer = lexers.get();
+
+        if (lexer == null) {
+            lexer = new Lexer(fileContent);
+            lexers.set(lexer);
+        } else {
+            lexer.reset(fileContent);
+        }
+        return analyze(lexer);
+    }
+
+    // tokenize a file through a memory mapping instead of loading it on the heap
+    public static String analyzeFile(Path file) throws IOException {
+        return analyze(new Lexer(file));
+    }
+
+    private static String analyze(Lexer lexer) throws IOException {
         StringBuilder result = new StringBuilder();
 
-        StringReader stringReader = new StringReader(fileContent);
-        Lexer lexer = new Lexer(stringReader);
 
         result.append("Tokenizing file content...\n");
         long startTime = System.currentTimeMillis();
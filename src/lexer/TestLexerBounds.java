@@ -0,0 +1,73 @@
+package lexer;
+
+import java.io.IOException;
+
+/*
+ * Adversarial inputs for the lexer's error paths. Each shape is repeated to
+ * a small and a large input; both are tokenized and the check fails (exit
+ * status 1) if a token does not consume at least one char, or if the time
+ * grows much faster than the input length.
+ */
+public class TestLexerBounds {
+    // unit repeated to fill the input, and text closing the input
+    private static final String[][] SHAPES = {
+        { "&", "" },
+        { "|", "" },
+        { "'", "" },
+        { "'a", "" },
+        { "'ab' ", "" },
+        { "&&&|||'''", "" },
+        { "1.", "" }, // malformed float after malformed float
+        { "1. ", "1." }, // malformed float at end of input
+        { "x", "" }, // one long identifier
+        { "9", "" }, // one out of range integer
+        { "1.5", "" }, // digits and dots: 1.51 .51 ...
+        { "12.e5 3.\t", "9.9.9" },
+        { "x1.", "1.x" },
+    };
+
+    private static final int SMALL = 1 << 18;
+    private static final int LARGE = SMALL * 8;
+
+    public static void main(String[] args) throws IOException {
+        boolean failed = false;
+
+        for (String[] shape : SHAPES) {
+            String small = input(shape, SMALL);
+            String large = input(shape, LARGE);
+
+            GrowthTimer timer = new GrowthTimer(input -> tokens(input), small, large);
+            int smallTokens = tokens(small);
+            int largeTokens = tokens(large);
+
+            String name = "\"" + shape[0].replace("\t", "\\t") + "\"";
+            System.out.println(name + ": " + largeTokens + " tokens for " + large.length() + " chars in " + timer);
+
+            // EOF is the one token that consumes nothing
+            if (smallTokens > small.length() + 1 || largeTokens > large.length() + 1) {
+                System.out.println("  FAILED: more tokens than chars");
+                failed = true;
+            }
+            if (timer.isSuperlinear()) {
+                System.out.println("  FAILED: time grows faster than the input");
+                failed = true;
+            }
+        }
+
+        if (failed)
+            System.exit(1);
+        System.out.println("All lexer bounds hold");
+    }
+
+    private static String input(String[] shape, int length) {
+        StringBuilder input = new StringBuilder(length + shape[1].length());
+
+        while (input.length() < length)
+            input.append(shape[0]);
+        return input.append(shape[1]).toString();
+    }
+
+    private static int tokens(String input) {
+        return new Lexer(input).tokenize().size();
+    }
+}
@@ -0,0 +1,450 @@
+package lexer;
+
+import java.util.Arrays;
+
+/*
+ * Packed token stream produced by Lexer.tokenize(). Tokens are stored column
+ * by column in parallel primitive arrays; literal values live in a side table
+ * that only holds entries for literal tokens, and identifier names are cut
+ * from the source on demand.
+ *
+ * The arrays belong to chunks that are never changed once scanned, and the
+ * buffer is a sequence of runs, each a range of a chunk with the shifts that
+ * move its offsets, lines and columns to where they are in this buffer.
+ * Lexer.relex() shares the chunks of the old buffer and only adds a chunk
+ * for the tokens it scans, so the tokens after an edit move by changing the
+ * shifts of their runs instead of copying them.
+ */
+public class TokenBuffer {
+	private final static TokenType[] tokenTypes = TokenType.values();
+
+	private PieceTable text; // text of the tokens, the offsets of getOffset() index it
+	private int origin; // source offset of offset 0, added by getStart()
+	private int size;
+
+	// runs in token order: tokens [froms[i], froms[i] + ends[i] - ends[i - 1]) of chunks[i]
+	private int runs;
+	private Chunk[] chunks = new Chunk[4];
+	private int[] froms = new int[4];
+	private int[] ends = new int[4]; // index after the last token of each run in this buffer
+	private int[] startShifts = new int[4]; // chunk start + shift = offset
+	private int[] lineShifts = new int[4];
+	private int[] columnLines = new int[4]; // chunk line whose columns move by columnShift, -1 for none
+	private int[] columnShifts = new int[4];
+	private Chunk chunk; // chunk add() appends to, null after append()
+
+	TokenBuffer(Lexer source, int capacity) {
+		this(new PieceTable(source, source.getOrigin(), source.getLimit() - source.getOrigin()), source.getOrigin());
+		startChunk(source, -origin, capacity);
+	}
+
+	// empty buffer over text, whose offset 0 is at origin in its source
+	TokenBuffer(PieceTable text, int origin) {
+		this.text = text;
+		this.origin = origin;
+	}
+
+	// start a run of tokens scanned from source, their starts moved by startShift
+	void startChunk(Lexer source, int startShift, int capacity) {
+		chunk = new Chunk(source, capacity);
+		addRun(chunk, 0, 0, startShift, 0, -1, 0);
+	}
+
+	void add(TokenType type, int start, int length, int line, int column, int literal) {
+		chunk.add(type, start, length, line, column, literal);
+		ends[runs - 1]++;
+		size++;
+	}
+
+	private void addRun(Chunk chunk, int from, int count, int startShift, int lineShift, int columnLine, int columnShift) {
+		int last = runs - 1;
+
+		// a run that goes on where the last one stops extends it
+		if (count > 0 && last >= 0 && chunks[last] == chunk && froms[last] + count(last) == from && startShifts[last] == startShift
+				&& lineShifts[last] == lineShift && columnLines[last] == columnLine && columnShifts[last] == columnShift) {
+			ends[last] += count;
+			size += count;
+			return;
+		}
+
+		if (runs == chunks.length) {
+			int capacity = runs * 2;
+			chunks = Arrays.copyOf(chunks, capacity);
+			froms = Arrays.copyOf(froms, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			startShifts = Arrays.copyOf(startShifts, capacity);
+			lineShifts = Arrays.copyOf(lineShifts, capacity);
+			columnLines = Arrays.copyOf(columnLines, capacity);
+			columnShifts = Arrays.copyOf(columnShifts, capacity);
+		}
+
+		chunks[runs] = chunk;
+		froms[runs] = from;
+		ends[runs] = size + count;
+		startShifts[runs] = startShift;
+		lineShifts[runs] = lineShift;
+		columnLines[runs] = columnLine;
+		columnShifts[runs] = columnShift;
+		runs++;
+		size += count;
+	}
+
+	/*
+	 * Append other[from, to) with offsets shifted by startShift and line
+	 * numbers by lineShift. Tokens on line columnLine of other also get their
+	 * column shifted by columnShift. The tokens are shared, not copied: the
+	 * work is proportional to the number of runs they span.
+	 */
+	void append(TokenBuffer other, int from, int to, int startShift, int lineShift, int columnLine, int columnShift) {
+		chunk = null;
+
+		for (int run = other.run(from); from < to; run++) {
+			int end = Math.min(other.ends[run], to);
+			int position = other.position(run, from);
+			int shift = other.startShifts[run] + startShift;
+			int lines = other.lineShifts[run] + lineShift;
+
+			// the tokens on columnLine come first, they get a run with their own column shift
+			int split = from;
+			if (columnLine >= 0) {
+				int high = end;
+				while (split < high) {
+					int middle = (split + high) >>> 1;
+
+					if (other.getLineNumber(middle) <= columnLine)
+						split = middle + 1;
+					else
+						high = middle;
+				}
+			}
+
+			if (split > from) {
+				int line = columnLine - other.lineShifts[run]; // columnLine in the chunk
+				int columns = columnShift + (other.columnLines[run] == line ? other.columnShifts[run] : 0);
+				addRun(other.chunks[run], position, split - from, shift, lines, line, columns);
+			}
+			if (end > split)
+				addRun(other.chunks[run], position + split - from, end - split, shift, lines, other.columnLines[run], other.columnShifts[run]);
+			from = end;
+		}
+	}
+
+	private int count(int run) {
+		return ends[run] - (run == 0 ? 0 : ends[run - 1]);
+	}
+
+	// run holding token index, the last run for indexes past the end
+	private int run(int index) {
+		int low = 0, high = runs - 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (ends[middle] <= index)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	// position in its chunk of the token index of run
+	private int position(int run, int index) {
+		return froms[run] + index - (run == 0 ? 0 : ends[run - 1]);
+	}
+
+	// index of the last token starting before offset, -1 if there is none
+	int lastStartingBefore(int offset) {
+		int low = 0, high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+
+			if (getOffset(middle) < offset)
+				low = middle + 1;
+			else
+				high = middle - 1;
+		}
+		return high;
+	}
+
+	PieceTable getText() {
+		return text;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public TokenType getType(int index) {
+		int run = run(index);
+		return tokenTypes[chunks[run].types[position(run, index)]];
+	}
+
+	public int getStart(int index) {
+		return getOffset(index) + origin;
+	}
+
+	public int getLength(int index) {
+		int run = run(index);
+		return chunks[run].lengths[position(run, index)];
+	}
+
+	// start of the token relative to the start of the source, as offsets of Lexer.relex()
+	public int getOffset(int index) {
+		int run = run(index);
+		return chunks[run].starts[position(run, index)] + startShifts[run];
+	}
+
+	public int getLineNumber(int index) {
+		int run = run(index);
+		return chunks[run].lines[position(run, index)] + lineShifts[run];
+	}
+
+	public int getColumnNumber(int index) {
+		int run = run(index);
+		return chunks[run].column(position(run, index), columnLines[run], columnShifts[run]);
+	}
+
+	public String getIdVal(int index) {
+		int run = run(index);
+		return chunks[run].idVal(position(run, index));
+	}
+
+	public int getIntVal(int index) {
+		return getType(index) == TokenType.INT_CONST ? literalValue(index) : 0;
+	}
+
+	public float getFloatVal(int index) {
+		return getType(index) == TokenType.FLOAT_CONST ? Float.intBitsToFloat(literalValue(index)) : 0;
+	}
+
+	public char getCharVal(int index) {
+		return getType(index) == TokenType.CHAR_CONST ? (char) literalValue(index) : 0;
+	}
+
+	public boolean getBooleanVal(int index) {
+		return getType(index) == TokenType.BOOLEAN_CONST && literalValue(index) != 0;
+	}
+
+	private int literalValue(int index) {
+		int run = run(index);
+		Chunk chunk = chunks[run];
+		return chunk.literalValues[chunk.firstLiteral(position(run, index))];
+	}
+
+	// materialize a single token
+	public Token getToken(int index) {
+		TokenAttribute attribute;
+
+		switch (getType(index)) {
+		case ID:
+			attribute = new TokenAttribute(getIdVal(index));
+			break;
+		case INT_CONST:
+			attribute = new TokenAttribute(getIntVal(index));
+			break;
+		case FLOAT_CONST:
+			attribute = new TokenAttribute(getFloatVal(index));
+			break;
+		case CHAR_CONST:
+			attribute = new TokenAttribute(getCharVal(index));
+			break;
+		case BOOLEAN_CONST:
+			attribute = new TokenAttribute(getBooleanVal(index));
+			break;
+		default:
+			attribute = new TokenAttribute();
+			break;
+		}
+		return new Token(getType(index), attribute, getLineNumber(index), getColumnNumber(index));
+	}
+
+	public TokenCursor cursor() {
+		return cursor(0);
+	}
+
+	// cursor starting on token from, getIndex() counts from there as well
+	public TokenCursor cursor(int from) {
+		Cursor cursor = new Cursor();
+
+		cursor.advanced = from;
+		cursor.seek(Math.min(from, size - 1));
+		return cursor;
+	}
+
+	// tokens scanned from one source, append() shares them between buffers
+	private static class Chunk {
+		private final Lexer source; // lexer that owns the scanned chars
+		private int size;
+		private byte[] types; // TokenType ordinals
+		private int[] starts; // source offsets
+		private int[] lengths;
+		private int[] lines;
+		private int[] columns;
+
+		// side table of literal values, ordered by token position
+		private int literals;
+		private int[] literalTokens;
+		private int[] literalValues; // int, char and boolean values as ints, floats as raw bits
+
+		Chunk(Lexer source, int capacity) {
+			this.source = source;
+			capacity = Math.max(capacity, 1);
+			types = new byte[capacity];
+			starts = new int[capacity];
+			lengths = new int[capacity];
+			lines = new int[capacity];
+			columns = new int[capacity];
+			literalTokens = new int[capacity / 8 + 1];
+			literalValues = new int[capacity / 8 + 1];
+		}
+
+		void add(TokenType type, int start, int length, int line, int column, int literal) {
+			if (size == types.length) {
+				int capacity = size * 2;
+				types = Arrays.copyOf(types, capacity);
+				starts = Arrays.copyOf(starts, capacity);
+				lengths = Arrays.copyOf(lengths, capacity);
+				lines = Arrays.copyOf(lines, capacity);
+				columns = Arrays.copyOf(columns, capacity);
+			}
+
+			switch (type) {
+			case INT_CONST:
+			case FLOAT_CONST:
+			case CHAR_CONST:
+			case BOOLEAN_CONST:
+				if (literals == literalTokens.length) {
+					literalTokens = Arrays.copyOf(literalTokens, literals * 2);
+					literalValues = Arrays.copyOf(literalValues, literals * 2);
+				}
+				literalTokens[literals] = size;
+				literalValues[literals] = literal;
+				literals++;
+				break;
+			default:
+				break;
+			}
+
+			types[size] = (byte) type.ordinal();
+			starts[size] = start;
+			lengths[size] = length;
+			lines[size] = line;
+			columns[size] = column;
+			size++;
+		}
+
+		// index in the side table of the first literal at or after position
+		int firstLiteral(int position) {
+			int literal = Arrays.binarySearch(literalTokens, 0, literals, position);
+			return literal < 0 ? -literal - 1 : literal;
+		}
+
+		int column(int position, int columnLine, int columnShift) {
+			return columns[position] + (lines[position] == columnLine ? columnShift : 0);
+		}
+
+		String idVal(int position) {
+			return types[position] == TokenType.ID.ordinal() ? source.lexeme(starts[position], lengths[position]) : null;
+		}
+	}
+
+	// walks the buffer front to back, tracking the run and the literal side table alongside
+	private class Cursor implements TokenCursor {
+		private int index;
+		private int advanced;
+		private int run;
+		private int end; // index after the last token of run
+		private Chunk chunk; // chunk of run
+		private int position; // position of index in chunk
+		private int literal; // first literal of chunk at or after position
+		private int markedIndex = -1, markedAdvanced;
+
+		// move to token index, resolving its run
+		private void seek(int index) {
+			this.index = index;
+			run = run(index);
+			end = ends[run];
+			chunk = chunks[run];
+			position = position(run, index);
+			literal = chunk.firstLiteral(position);
+		}
+
+		public TokenType getType() {
+			return tokenTypes[chunk.types[position]];
+		}
+
+		public int getLineNumber() {
+			return chunk.lines[position] + lineShifts[run];
+		}
+
+		public int getColumnNumber() {
+			return chunk.column(position, columnLines[run], columnShifts[run]);
+		}
+
+		public int getIntVal() {
+			return getType() == TokenType.INT_CONST ? chunk.literalValues[literal] : 0;
+		}
+
+		public float getFloatVal() {
+			return getType() == TokenType.FLOAT_CONST ? Float.intBitsToFloat(chunk.literalValues[literal]) : 0;
+		}
+
+		public char getCharVal() {
+			return getType() == TokenType.CHAR_CONST ? (char) chunk.literalValues[literal] : 0;
+		}
+
+		public boolean getBooleanVal() {
+			return getType() == TokenType.BOOLEAN_CONST && chunk.literalValues[literal] != 0;
+		}
+
+		public String getIdVal() {
+			return chunk.idVal(position);
+		}
+
+		public int getIndex() {
+			return advanced;
+		}
+
+		public void advance() {
+			advanced++;
+
+			// the last token is EOF, stay on it like Lexer.getToken() does
+			if (index == size - 1)
+				return;
+
+			if (index + 1 == end) {
+				seek(index + 1);
+				return;
+			}
+
+			if (literal < chunk.literals && chunk.literalTokens[literal] == position)
+				literal++;
+			index++;
+			position++;
+		}
+
+		public TokenType peek(int k) {
+			int ahead = Math.min(index + k, size - 1);
+			return ahead < end ? tokenTypes[chunk.types[position + ahead - index]] : TokenBuffer.this.getType(ahead);
+		}
+
+		public void mark() {
+			markedIndex = index;
+			markedAdvanced = advanced;
+		}
+
+		public void rewind() {
+			if (markedIndex < 0)
+				throw new IllegalStateException("rewind() without mark()");
+
+			if (markedIndex != index)
+				seek(markedIndex);
+			advanced = markedAdvanced;
+			markedIndex = -1;
+		}
+
+		public void release() {
+			markedIndex = -1;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package lexer;
+
+import java.io.IOException;
+
+/*
+ * Sequential view of a token stream. The cursor sits on the current token and
+ * exposes its fields directly, so a consumer can walk a packed TokenBuffer
+ * without materializing Token and TokenAttribute objects.
+ */
+public interface TokenCursor {
+	public TokenType getType();
+	public int getLineNumber();
+	public int getColumnNumber();
+
+	public int getIntVal();
+	public float getFloatVal();
+	public char getCharVal();
+	public boolean getBooleanVal();
+	public String getIdVal();
+
+	// number of advance() calls so far, identifies the current token
+	public int getIndex();
+
+	// move to the next token
+	public void advance() throws IOException;
+
+	// type of the k-th token after the current one, 1 <= k <= Lexer.LOOKAHEAD
+	public TokenType peek(int k) throws IOException;
+
+	// remember the current token; rewind() returns to it, release() forgets it
+	public void mark();
+	public void rewind();
+	public void release();
+}
@@ -0,0 +1,133 @@
+package parser;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+import lexer.TokenType;
+
+/*
+ * A context free grammar with its FIRST and FOLLOW sets. Symbols are ints:
+ * terminals are TokenType ordinals and nonterminals are numbered after
+ * them. Parser builds its error recovery sets from these, so they follow
+ * the grammar instead of being listed by hand.
+ */
+final class Grammar {
+	static final int TERMINALS = TokenType.values().length;
+
+	private final Class<?> nonterminalType;
+	private final int nonterminals;
+
+	private ArrayList<int[]> rules = new ArrayList<int[]>(); // rhs of each rule
+	private ArrayList<Integer> lhs = new ArrayList<Integer>();
+
+	private boolean[] nullable;
+	private BitSet[] first;
+	private BitSet[] follow;
+
+	<N extends Enum<N>> Grammar(Class<N> nonterminalType) {
+		this.nonterminalType = nonterminalType;
+		this.nonterminals = nonterminalType.getEnumConstants().length;
+	}
+
+	// add the rule lhs ::= rhs, made of TokenTypes and nonterminals
+	void rule(Enum<?> lhs, Enum<?>... rhs) {
+		int[] symbols = new int[rhs.length];
+
+		for (int i = 0; i < rhs.length; i++) {
+			if (rhs[i] instanceof TokenType)
+				symbols[i] = rhs[i].ordinal();
+			else if (rhs[i].getClass() == nonterminalType)
+				symbols[i] = TERMINALS + rhs[i].ordinal();
+			else
+				throw new IllegalArgumentException("Not a grammar symbol: " + rhs[i]);
+		}
+		rules.add(symbols);
+		this.lhs.add(lhs.ordinal());
+	}
+
+	// compute FIRST and FOLLOW
+	void compile() {
+		nullable = new boolean[nonterminals];
+		first = new BitSet[nonterminals];
+		follow = new BitSet[nonterminals];
+
+		for (int i = 0; i < nonterminals; i++) {
+			first[i] = new BitSet(TERMINALS);
+			follow[i] = new BitSet(TERMINALS);
+		}
+
+		// FIRST sets and nullable nonterminals
+		for (boolean changed = true; changed; ) {
+			changed = false;
+
+			for (int rule = 0; rule < rules.size(); rule++) {
+				int nonterminal = lhs.get(rule);
+				BitSet set = new BitSet(TERMINALS);
+				boolean empty = first(rules.get(rule), 0, set);
+
+				if (!contains(first[nonterminal], set)) {
+					first[nonterminal].or(set);
+					changed = true;
+				}
+				if (empty && !nullable[nonterminal]) {
+					nullable[nonterminal] = true;
+					changed = true;
+				}
+			}
+		}
+
+		// FOLLOW sets
+		for (boolean changed = true; changed; ) {
+			changed = false;
+
+			for (int rule = 0; rule < rules.size(); rule++) {
+				int[] rhs = rules.get(rule);
+
+				for (int i = 0; i < rhs.length; i++) {
+					if (rhs[i] < TERMINALS)
+						continue;
+
+					int nonterminal = rhs[i] - TERMINALS;
+					BitSet set = new BitSet(TERMINALS);
+
+					if (first(rhs, i + 1, set))
+						set.or(follow[lhs.get(rule)]);
+
+					if (!contains(follow[nonterminal], set)) {
+						follow[nonterminal].or(set);
+						changed = true;
+					}
+				}
+			}
+		}
+	}
+
+	// add FIRST(rhs[from..]) to set, true if that part of rhs can be empty
+	private boolean first(int[] rhs, int from, BitSet set) {
+		for (int i = from; i < rhs.length; i++) {
+			if (rhs[i] < TERMINALS) {
+				set.set(rhs[i]);
+				return false;
+			}
+
+			set.or(first[rhs[i] - TERMINALS]);
+			if (!nullable[rhs[i] - TERMINALS])
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean contains(BitSet set, BitSet subset) {
+		BitSet missing = (BitSet) subset.clone();
+		missing.andNot(set);
+		return missing.isEmpty();
+	}
+
+	boolean inFirst(Enum<?> nonterminal, TokenType terminal) {
+		return first[nonterminal.ordinal()].get(terminal.ordinal());
+	}
+
+	boolean inFollow(Enum<?> nonterminal, TokenType terminal) {
+		return follow[nonterminal.ordinal()].get(terminal.ordinal());
+	}
+}
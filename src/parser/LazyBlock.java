@@ -0,0 +1,87 @@
+package parser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import ast.Block;
+import ast.StatementList;
+import lexer.TokenBuffer;
+
+/*
+ * Block returned by Parser.parseLazyProgram(). The parser only checked that
+ * its braces balance; the statements are parsed from the token buffer the
+ * first time getStms() is called, by any thread, and kept from then on.
+ * Blocks nested in it are lazy again.
+ *
+ * Syntax errors inside the block are reported here instead of by the
+ * parser, and its nodes are not added to the symbol lists. Their ids follow
+ * the ids the parser handed out so far, so the parser must not be reset
+ * while lazy blocks of its tree can still be materialized.
+ */
+public class LazyBlock extends Block {
+	private final Parser root; // parser whose node ids the statements continue
+	private final TokenBuffer tokens;
+	private final int spanStart; // token index of '{'
+	private final int spanEnd; // token index after '}'
+
+	private volatile StatementList stms;
+	private int errors;
+	private String errorMessage;
+
+	LazyBlock(Parser root, TokenBuffer tokens, int spanStart, int spanEnd) {
+		super(null);
+		this.root = root;
+		this.tokens = tokens;
+		this.spanStart = spanStart;
+		this.spanEnd = spanEnd;
+	}
+
+	@Override
+	public StatementList getStms() {
+		StatementList stms = this.stms;
+
+		if (stms == null) {
+			synchronized (this) {
+				stms = this.stms;
+
+				if (stms == null) {
+					Parser parser = new Parser(root, tokens, spanStart);
+
+					try {
+						stms = parser.parseLazyStatements();
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					errors = parser.getErrors();
+					errorMessage = parser.getErrorMessage();
+					this.stms = stms;
+				}
+			}
+		}
+		return stms;
+	}
+
+	// whether getStms() has parsed the statements yet
+	public boolean isMaterialized() {
+		return stms != null;
+	}
+
+	public int getSpanStart() {
+		return spanStart;
+	}
+
+	public int getSpanEnd() {
+		return spanEnd;
+	}
+
+	// syntax errors inside the block, parses it if that has not happened yet
+	public int getErrors() {
+		getStms();
+		return errors;
+	}
+
+	public String getErrorMessage() {
+		getStms();
+		return errorMessage;
+	}
+}
@@ -0,0 +1,205 @@
+package parser;
+
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Process-wide cache of parse results keyed by a 128 bit hash of the
+ * source, so a resubmitted file is not parsed again. Entries are evicted in
+ * least recently used order once their estimated size exceeds the budget.
+ *
+ * The hash is seeded at random once per process, so colliding sources
+ * cannot be prepared in advance. A key also keeps its source and a hit is
+ * only returned if the sources are equal, so even a collision never
+ * returns the tree of another file; the source counts toward the budget.
+ */
+public class ParseCache {
+	private static final ParseCache shared = new ParseCache(64L << 20);
+
+	private static final long C1 = 0x87c37b91114253d5L;
+	private static final long C2 = 0x4cf5ad432745937fL;
+	private static final long SEED = new SecureRandom().nextLong();
+
+	private final LinkedHashMap<Key, ParseResult> entries = new LinkedHashMap<Key, ParseResult>(16, 0.75f, true);
+	private final long maxBytes;
+	private long bytes; // estimated size of the entries
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public ParseCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	// cache used by the testers, 64MB
+	public static ParseCache getShared() {
+		return shared;
+	}
+
+	// result stored for fileContent, null on a miss
+	public ParseResult get(String fileContent) {
+		Key key = new Key(fileContent);
+
+		synchronized (this) {
+			ParseResult result = entries.get(key);
+
+			if (result == null)
+				misses++;
+			else
+				hits++;
+			return result;
+		}
+	}
+
+	// results larger than the whole budget are not kept
+	public void put(String fileContent, ParseResult result) {
+		Key key = new Key(fileContent);
+		long size = size(key, result);
+
+		if (size > maxBytes)
+			return;
+
+		synchronized (this) {
+			ParseResult old = entries.put(key, result);
+
+			if (old != null)
+				bytes -= size(key, old);
+			bytes += size;
+
+			Iterator<Map.Entry<Key, ParseResult>> eldest = entries.entrySet().iterator();
+			while (bytes > maxBytes) {
+				Map.Entry<Key, ParseResult> entry = eldest.next();
+
+				bytes -= size(entry.getKey(), entry.getValue());
+				eldest.remove();
+				evictions++;
+			}
+		}
+	}
+
+	// the result and the source kept to verify hits, two bytes per char
+	private static long size(Key key, ParseResult result) {
+		return result.estimateBytes() + 2L * key.source.length();
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/*
+	 * MurmurHash3 x64 128 over the chars of the source, four chars to a
+	 * block, seeded with SEED and the length folded in at the end. Keys
+	 * with equal hashes are only equal if their sources are.
+	 */
+	private static final class Key {
+		private final String source;
+		private final long h1;
+		private final long h2;
+
+		Key(String source) {
+			int length = source.length();
+			int blocks = length & ~7;
+			long h1 = SEED, h2 = SEED;
+
+			for (int i = 0; i < blocks; i += 8) {
+				long k1 = chars(source, i);
+				long k2 = chars(source, i + 4);
+
+				h1 ^= mixK1(k1);
+				h1 = Long.rotateLeft(h1, 27) + h2;
+				h1 = h1 * 5 + 0x52dce729;
+
+				h2 ^= mixK2(k2);
+				h2 = Long.rotateLeft(h2, 31) + h1;
+				h2 = h2 * 5 + 0x38495ab5;
+			}
+
+			// tail of up to seven chars
+			long k1 = 0, k2 = 0;
+			for (int i = blocks; i < length; i++) {
+				long c = source.charAt(i);
+				int shift = ((i - blocks) & 3) * 16;
+
+				if (i - blocks < 4)
+					k1 |= c << shift;
+				else
+					k2 |= c << shift;
+			}
+			h1 ^= mixK1(k1);
+			h2 ^= mixK2(k2);
+
+			h1 ^= length;
+			h2 ^= length;
+			h1 += h2;
+			h2 += h1;
+			h1 = fmix(h1);
+			h2 = fmix(h2);
+			h1 += h2;
+			h2 += h1;
+
+			this.source = source;
+			this.h1 = h1;
+			this.h2 = h2;
+		}
+
+		private static long chars(String source, int i) {
+			return source.charAt(i) | (long) source.charAt(i + 1) << 16
+					| (long) source.charAt(i + 2) << 32 | (long) source.charAt(i + 3) << 48;
+		}
+
+		private static long mixK1(long k1) {
+			return Long.rotateLeft(k1 * C1, 31) * C2;
+		}
+
+		private static long mixK2(long k2) {
+			return Long.rotateLeft(k2 * C2, 33) * C1;
+		}
+
+		private static long fmix(long k) {
+			k ^= k >>> 33;
+			k *= 0xff51afd7ed558ccdL;
+			k ^= k >>> 33;
+			k *= 0xc4ceb93fe1a85ec3L;
+			k ^= k >>> 33;
+			return k;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key))
+				return false;
+
+			Key key = (Key) other;
+			return key.h1 == h1 && key.h2 == h2 && key.source.equals(source);
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) h1;
+		}
+	}
+}
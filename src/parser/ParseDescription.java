@@ -0,0 +1,53 @@
+package parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import ast.Identifier;
+import ast.Program;
+import ast.StatementList;
+import visitor.PrintVisitor;
+
+/*
+ * Text of a parse for the testers that compare two ways of parsing the same
+ * source: the errors, the symbol lists and the statements as PrintVisitor
+ * prints them. Declarations print as object ids, so two descriptions only
+ * match when the trees match statement for statement.
+ */
+class ParseDescription {
+	private ParseDescription() {
+	}
+
+	static String describe(Parser parser, Program program) {
+		StringBuilder result = new StringBuilder();
+
+		result.append(parser.getErrors()).append(" errors\n").append(parser.getErrorMessage());
+		result.append(parser.getNodeCount()).append(" nodes, ").append(parser.getDecelarations().size())
+				.append(" declarations, ").append(parser.getAssigns().size()).append(" assigns, ")
+				.append(parser.getConditions().size()).append(" conditions\n");
+		for (Identifier id : parser.getIdentifiers())
+			result.append(id.getName()).append('#').append(id.getNodeId()).append(' ');
+		result.append('\n');
+		return result.append(print(program.getStm())).toString();
+	}
+
+	// the statements as PrintVisitor prints them, one per line
+	static String print(StatementList statements) {
+		ByteArrayOutputStream printed = new ByteArrayOutputStream();
+		PrintStream out = System.out;
+
+		System.setOut(new PrintStream(printed));
+		try {
+			PrintVisitor printer = new PrintVisitor();
+
+			for (int i = 0; i < statements.size(); i++) {
+				if (statements.elementAt(i) != null)
+					statements.elementAt(i).accept(printer);
+				System.out.println();
+			}
+		} finally {
+			System.setOut(out);
+		}
+		return printed.toString();
+	}
+}
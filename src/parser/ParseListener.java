@@ -0,0 +1,35 @@
+package parser;
+
+import ast.Exp;
+import ast.Identifier;
+import ast.Type;
+import lexer.TokenType;
+
+/*
+ * Receives the constructs of a program as Parser.parse(ParseListener)
+ * recognizes them. The parser keeps no tree or symbol lists in that mode,
+ * so the nodes passed in are only referenced for the duration of a call;
+ * a listener that needs them later has to copy what it needs.
+ *
+ * Events of each kind arrive in the order parseProgram() adds the nodes to
+ * the matching symbol list.
+ */
+public interface ParseListener {
+	// a declared variable, type is null if it did not parse; span in token indices
+	public void onDeclaration(Type type, Identifier id, int spanStart, int spanEnd);
+
+	// an identifier used by a statement or expression
+	public void onIdentifier(Identifier id);
+
+	// an assignment to a whole variable; value is null if it did not parse
+	public void onAssign(Identifier target, Exp value);
+
+	// an assignment to the array element target[index]; value is null if it did not parse
+	public void onArrayAssign(Identifier target, Exp index, Exp value);
+
+	// the condition of an if or while statement
+	public void onCondition(Exp condition);
+
+	// a syntax error, reported once per erroneous token
+	public void onError(TokenType found, TokenType expected, int line, int column);
+}
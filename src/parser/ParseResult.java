@@ -0,0 +1,97 @@
+package parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ast.Assign;
+import ast.Exp;
+import ast.Identifier;
+import ast.Program;
+import ast.VarDecl;
+
+/*
+ * Everything parseProgram() produced for one source, detached from the
+ * parser so the parser can be reset. Results are shared through the
+ * ParseCache: the lists are read-only and the tree must not be modified.
+ */
+public class ParseResult {
+	private final Program program;
+	private final List<VarDecl> decelarations;
+	private final List<Identifier> identifiers;
+	private final List<Assign> assigns;
+	private final List<Exp> conditions;
+	private final List<String> diagnostics;
+	private final int errors;
+	private final int nodeCount;
+
+	// snapshot of the parser right after it parsed program
+	public ParseResult(Program program, Parser parser) {
+		this.program = program;
+		this.decelarations = copy(parser.getDecelarations());
+		this.identifiers = copy(parser.getIdentifiers());
+		this.assigns = copy(parser.getAssigns());
+		this.conditions = copy(parser.getConditions());
+		this.diagnostics = copy(parser.getDiagnostics());
+		this.errors = parser.getErrors();
+		this.nodeCount = parser.getNodeCount();
+	}
+
+	private static <T> List<T> copy(List<T> list) {
+		return Collections.unmodifiableList(new ArrayList<T>(list));
+	}
+
+	public Program getProgram() {
+		return program;
+	}
+
+	public List<VarDecl> getDecelarations() {
+		return decelarations;
+	}
+
+	public List<Identifier> getIdentifiers() {
+		return identifiers;
+	}
+
+	public List<Assign> getAssigns() {
+		return assigns;
+	}
+
+	public List<Exp> getConditions() {
+		return conditions;
+	}
+
+	public List<String> getDiagnostics() {
+		return diagnostics;
+	}
+
+	public int getErrors() {
+		return errors;
+	}
+
+	public String getErrorMessage() {
+		StringBuilder message = new StringBuilder();
+
+		for (String diagnostic : diagnostics)
+			message.append(diagnostic);
+		return message.toString();
+	}
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/*
+	 * Rough heap size for the cache budget: a node with its fields and
+	 * list slot, the declarations, which are not nodes, the list copies and
+	 * the message chars.
+	 */
+	long estimateBytes() {
+		long bytes = 128 + 48L * nodeCount + 32L * decelarations.size();
+
+		bytes += 8L * (decelarations.size() + identifiers.size() + assigns.size() + conditions.size());
+		for (String diagnostic : diagnostics)
+			bytes += 48 + 2L * diagnostic.length();
+		return bytes;
+	}
+}
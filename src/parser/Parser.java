@@ -1,30 +1,93 @@
 package parser;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 import ast.*;
 import lexer.Lexer;
-import lexer.Token;
+import lexer.TokenBuffer;
+import lexer.TokenCursor;
 import lexer.TokenType;
 
 public class Parser {
-	private Lexer lexer;
-	private Token token;
-	private Token errorToken;
+	private Lexer lexer; // lexer the tokens come from, null for a TokenBuffer
+	private TokenBuffer tokens; // buffer the tokens come from, null for a Lexer
+	private TokenCursor token; // current token
+	private int errorIndex = -1; // index of the last erroneous token
+	private final ObjectBuilder objects = new ObjectBuilder(); // builds the tree of parseProgram()
+	private TreeBuilder builder = objects; // builds the nodes of the current parse
+	private ParseListener listener; // receives the events of parse(), null otherwise
+	private boolean lazy; // blocks are left unparsed, see parseLazyProgram()
+	private Parser root = this; // parser of the whole tree when parsing a LazyBlock
+	private ArrayList<Node> created; // nodes of the LazyBlock or chunk being parsed
+
+	// incremental mode, see parseIncrementalProgram()
+	private Program program; // tree reparse() edits
+	private int[] spanStarts; // token range by node id of statements and symbol list entries
+	private int[] spanEnds;
+	private int[] spanEdits; // edits already applied to each span, see spanStart()
+	private int edits; // edits reparse() applied to the tokens
+	private int[] editTokens = new int[16]; // first token each edit moved, before the edit
+	private int[] editShifts = new int[16]; // tokens each edit added
+	private int statementsStart; // token range of the statements of main
+	private int statementsEnd;
 
 	// hash table for operator precedence levels
 	private final static Map<TokenType, Integer> binopLevels;
+	private final static int[] levels; // binopLevels by token type ordinal, -1 for non-operators
+
+	// frames and steps of the expression parser, see parseExp()
+	private final static int EXP_FRAME = 0; // waiting for the first primary of an exp
+	private final static int BINOP_FRAME = 1; // operator loop of an exp
+	private final static int NESTED_FRAME = 2; // operator loop of a higher precedence rhs
+	private final static int NOT_FRAME = 3;
+	private final static int NEGATIVE_FRAME = 4;
+	private final static int PAREN_FRAME = 5;
+	private final static int PRIMARY = 0, PRIMARY_DONE = 1, OPERATOR = 2, LOOP_DONE = 3;
+	private final static int NONE = TreeBuilder.NONE;
 	
-	private ArrayList <VarDecl> decelarations; //declarations symbol table
-	private ArrayList <Identifier> identifiers; //identifiers symbol table
-	private ArrayList <Assign> assigns; //assigns symbol table
-	private ArrayList <Exp> conditions; //conditions symbol table
+	private BlockList <VarDecl> decelarations; //declarations symbol table
+	private BlockList <Identifier> identifiers; //identifiers symbol table
+	private BlockList <Assign> assigns; //assigns symbol table
+	private BlockList <Exp> conditions; //conditions symbol table
 	
+	private int nodes; // ids handed out to the nodes built so far
+
+	// expression parser stack, one entry per pending frame
+	private int frames;
+	private int[] frameKinds = new int[16];
+	private int[] frameLevels = new int[16]; // lowest operator level the loop accepts
+	private int[] frameOpLevels = new int[16]; // level of the operator waiting for its rhs
+	private TokenType[] frameOps = new TokenType[16];
+	private int[] frameValues = new int[16]; // lhs of the operator loop
+	private int[] frameStarts = new int[16]; // first token of the frame
+	private int[] frameRhsStarts = new int[16]; // first token of the rhs
+
 	private int errors;
-	public String errorMessage = "";
+	private int maxErrors = Integer.MAX_VALUE; // parsing stops after this many errors
+	private ArrayList<String> diagnostics = new ArrayList<String>(); // one message per error
+
+	// nonterminals of the grammar below, where parsing recovers from errors
+	private enum NonTerminal {
+		PROGRAM, DECLARATIONS, VAR_DECL_LIST, VAR_TAIL, TYPE, ARRAY_SUFFIX, STATEMENTS, STATEMENT,
+		CONDITION, BODY, BLOCK, ELSE_PART, ASSIGN_TAIL, VALUE, EXP, EXP_TAIL, PRIMARY
+	}
+
+	// synchronization sets of the constructs, by token type ordinal, see skipTo()
+	private final static boolean[] CONDITION_SYNC; // missing '(': resume at the condition, else at the body
+	private final static boolean[] BODY_SYNC; // missing ')': resume at the body
+	private final static boolean[] INDEX_SYNC; // missing ']': resume at the '=' of the value
+	private final static boolean[] VALUE_SYNC; // missing '=': leave the value
+	private final static boolean[] BLOCK_SYNC; // missing '}': leave the block
+	private final static boolean[] STATEMENT_SYNC; // at brace depth 0, see skipStatement()
 
 	static {
 		binopLevels = new HashMap<TokenType, Integer>();
@@ -42,21 +105,177 @@ public class Parser {
 		binopLevels.put(TokenType.DIV, 40);
 		binopLevels.put(TokenType.MOD, 40);
 		binopLevels.put(TokenType.LBRACKET, 50);
+
+		levels = new int[TokenType.values().length];
+		Arrays.fill(levels, -1);
+		for (Map.Entry<TokenType, Integer> level : binopLevels.entrySet())
+			levels[level.getKey().ordinal()] = level.getValue();
+	}
+
+	static {
+		Grammar grammar = new Grammar(NonTerminal.class);
+
+		// Program ::= int main '('')' { Declarations StatementList }
+		grammar.rule(NonTerminal.PROGRAM, TokenType.INT, TokenType.MAIN, TokenType.LPAREN, TokenType.RPAREN,
+				TokenType.LBRACE, NonTerminal.DECLARATIONS, NonTerminal.STATEMENTS, TokenType.RBRACE, TokenType.EOF);
+
+		// Declarations ::= { VarDeclList }
+		grammar.rule(NonTerminal.DECLARATIONS, NonTerminal.VAR_DECL_LIST, NonTerminal.DECLARATIONS);
+		grammar.rule(NonTerminal.DECLARATIONS);
+
+		// VarDeclList ::= Type Identifier { , Identifier };
+		grammar.rule(NonTerminal.VAR_DECL_LIST, NonTerminal.TYPE, TokenType.ID, NonTerminal.VAR_TAIL, TokenType.SEMI);
+		grammar.rule(NonTerminal.VAR_TAIL, TokenType.COMMA, TokenType.ID, NonTerminal.VAR_TAIL);
+		grammar.rule(NonTerminal.VAR_TAIL);
+
+		// Type ::= (int | float | boolean | char) [ '['integer']' ]
+		for (TokenType type : new TokenType[] { TokenType.INT, TokenType.FLOAT, TokenType.BOOLEAN, TokenType.CHAR })
+			grammar.rule(NonTerminal.TYPE, type, NonTerminal.ARRAY_SUFFIX);
+		grammar.rule(NonTerminal.ARRAY_SUFFIX, TokenType.LBRACKET, TokenType.INT_CONST, TokenType.RBRACKET);
+		grammar.rule(NonTerminal.ARRAY_SUFFIX);
+
+		// StatementList ::= { Statement }
+		grammar.rule(NonTerminal.STATEMENTS, NonTerminal.STATEMENT, NonTerminal.STATEMENTS);
+		grammar.rule(NonTerminal.STATEMENTS);
+
+		// IfStatement ::=  if '('Exp')' Statement [else Statement]
+		grammar.rule(NonTerminal.STATEMENT, TokenType.IF, TokenType.LPAREN, NonTerminal.CONDITION, TokenType.RPAREN,
+				NonTerminal.BODY, NonTerminal.ELSE_PART);
+		grammar.rule(NonTerminal.ELSE_PART, TokenType.ELSE, NonTerminal.BODY);
+		grammar.rule(NonTerminal.ELSE_PART);
+
+		// WhileStatement ::= while '('Exp')' Statement
+		grammar.rule(NonTerminal.STATEMENT, TokenType.WHILE, TokenType.LPAREN, NonTerminal.CONDITION, TokenType.RPAREN,
+				NonTerminal.BODY);
+		grammar.rule(NonTerminal.CONDITION, NonTerminal.EXP);
+
+		// identifier = Exp ; | identifier '['Exp']' = Exp ;
+		grammar.rule(NonTerminal.STATEMENT, TokenType.ID, NonTerminal.ASSIGN_TAIL);
+		grammar.rule(NonTerminal.ASSIGN_TAIL, NonTerminal.VALUE, TokenType.SEMI);
+		grammar.rule(NonTerminal.ASSIGN_TAIL, TokenType.LBRACKET, NonTerminal.EXP, TokenType.RBRACKET,
+				NonTerminal.VALUE, TokenType.SEMI);
+		grammar.rule(NonTerminal.VALUE, TokenType.ASSIGN, NonTerminal.EXP);
+
+		// Block ::= '{' StatementList '}', only as the body of if and while
+		grammar.rule(NonTerminal.BODY, NonTerminal.BLOCK);
+		grammar.rule(NonTerminal.BODY, NonTerminal.STATEMENT);
+		grammar.rule(NonTerminal.BLOCK, TokenType.LBRACE, NonTerminal.STATEMENTS, TokenType.RBRACE);
+
+		// Exp ::= PrimaryExp { binop PrimaryExp }, the index of an array lookup is a primary exp
+		grammar.rule(NonTerminal.EXP, NonTerminal.PRIMARY, NonTerminal.EXP_TAIL);
+		for (TokenType binop : binopLevels.keySet()) {
+			if (binop != TokenType.LBRACKET)
+				grammar.rule(NonTerminal.EXP_TAIL, binop, NonTerminal.PRIMARY, NonTerminal.EXP_TAIL);
+		}
+		grammar.rule(NonTerminal.EXP_TAIL, TokenType.LBRACKET, NonTerminal.PRIMARY, TokenType.RBRACKET,
+				NonTerminal.EXP_TAIL);
+		grammar.rule(NonTerminal.EXP_TAIL);
+
+		// PrimaryExp ::= INT_CONST | FLOAT_CONST | CHAR_CONST | BOOLEAN_CONST | ! Exp | - Exp | '(' Exp ')' | Identifier
+		for (TokenType literal : new TokenType[] { TokenType.INT_CONST, TokenType.FLOAT_CONST, TokenType.BOOLEAN_CONST,
+				TokenType.CHAR_CONST, TokenType.ID })
+			grammar.rule(NonTerminal.PRIMARY, literal);
+		grammar.rule(NonTerminal.PRIMARY, TokenType.NOT, NonTerminal.EXP);
+		grammar.rule(NonTerminal.PRIMARY, TokenType.NEGATIVE, NonTerminal.EXP);
+		grammar.rule(NonTerminal.PRIMARY, TokenType.LPAREN, NonTerminal.EXP, TokenType.RPAREN);
+
+		grammar.compile();
+
+		CONDITION_SYNC = syncSet(grammar, true, NonTerminal.CONDITION, NonTerminal.BODY);
+		BODY_SYNC = syncSet(grammar, true, NonTerminal.BODY);
+		INDEX_SYNC = syncSet(grammar, true, NonTerminal.VALUE);
+		VALUE_SYNC = syncSet(grammar, false, NonTerminal.VALUE);
+		BLOCK_SYNC = syncSet(grammar, false, NonTerminal.BLOCK);
+
+		// panic mode resumes at the next statement, or after the ';' ending the bad one
+		STATEMENT_SYNC = new boolean[TokenType.values().length];
+		for (TokenType type : TokenType.values()) {
+			if (grammar.inFirst(NonTerminal.STATEMENT, type))
+				STATEMENT_SYNC[type.ordinal()] = true;
+		}
+		STATEMENT_SYNC[TokenType.SEMI.ordinal()] = true;
 	}
 
 	public Parser(String fileContent) throws IOException {
-		this.lexer = new Lexer(fileContent);
-		this.token = lexer.getToken();
-		this.decelarations = new ArrayList<VarDecl>();
-		this.identifiers = new ArrayList<Identifier>();
-		this.assigns = new ArrayList<Assign>();
-		this.conditions = new ArrayList<Exp>();
+		this(new Lexer(fileContent));
+	}
+
+	public Parser(Lexer lexer) throws IOException {
+		this(lexer.cursor());
+		this.lexer = lexer;
+	}
+
+	// parse a packed token stream produced by Lexer.tokenize()
+	public Parser(TokenBuffer tokens) {
+		this(tokens.cursor());
+		this.tokens = tokens;
+	}
+
+	// parser for part of a TokenBuffer, its nodes are numbered by the caller
+	private Parser(TokenBuffer tokens, int start) {
+		this(tokens.cursor(start));
+		this.tokens = tokens;
+		this.created = new ArrayList<Node>();
+	}
+
+	// parser for the statements of a LazyBlock starting at token start
+	Parser(Parser root, TokenBuffer tokens, int start) {
+		this(tokens, start);
+		this.root = root;
+		this.lazy = true;
+	}
+
+	private Parser(TokenCursor token) {
+		this.token = token;
+		this.decelarations = new BlockList<VarDecl>();
+		this.identifiers = new BlockList<Identifier>();
+		this.assigns = new BlockList<Assign>();
+		this.conditions = new BlockList<Exp>();
+	}
+
+	/*
+	 * Start over on new content, keeping the lexer buffer and the capacity of
+	 * the symbol lists. The lists returned by the getters are cleared, so
+	 * results of the previous parse must be consumed before calling this.
+	 * Nothing of the previous parse is kept: the tree and spans of
+	 * parseIncrementalProgram() are dropped, so reparse() needs a new
+	 * parseIncrementalProgram() first.
+	 */
+	public void reset(String fileContent) throws IOException {
+		if (lexer == null)
+			lexer = new Lexer(fileContent);
+		else
+			lexer.reset(fileContent);
+
+		token = lexer.cursor();
+		tokens = null;
+		errorIndex = -1;
+		builder = objects;
+		objects.clear();
+		listener = null;
+		lazy = false;
+		program = null;
+		spanStarts = null;
+		spanEnds = null;
+		spanEdits = null;
+		edits = 0;
+		statementsStart = 0;
+		statementsEnd = 0;
+		while (frames > 0)
+			pop();
+		nodes = 0;
+		errors = 0;
+		diagnostics.clear();
+		decelarations.clear();
+		identifiers.clear();
+		assigns.clear();
+		conditions.clear();
 	}
 
 	// verifies current token type and grabs next token or reports error
 	private boolean eat(TokenType type) throws IOException {
 		if (token.getType() == type) {
-			token = lexer.getToken();
+			token.advance();
 			return true;
 		} else {
 			error(type);
@@ -65,25 +284,190 @@ public class Parser {
 	}
 
 	// reports an error to the console
-	private void error(TokenType type) {
-		// only report error once per erroneous token
-		if (token == errorToken)
+	private void error(TokenType type) throws IOException {
+		// only report error once per erroneous token, and none once parsing stopped
+		if (token.getIndex() == errorIndex || errors == maxErrors)
 			return;
 
-		errorMessage += "ERROR: " + token.getType() +" at line " + token.getLineNumber() + ", column " + token.getColumnNumber() + "; Expected " + type + "\n";
-		errorToken = token; // set error token to prevent cascading
+		diagnostics.add("ERROR: " + token.getType() +" at line " + token.getLineNumber() + ", column " + token.getColumnNumber() + "; Expected " + type + "\n");
+		if (listener != null)
+			listener.onError(token.getType(), type, token.getLineNumber(), token.getColumnNumber());
+		errorIndex = token.getIndex(); // set error token to prevent cascading
 		errors++; // increment error counter
+
+		// out of budget: skip the rest of the input, every construct then unwinds at EOF
+		if (errors == maxErrors) {
+			diagnostics.add("ERROR: too many errors, parsing stopped at line " + token.getLineNumber() + ", column " + token.getColumnNumber() + "\n");
+
+			while (token.getType() != TokenType.EOF)
+				token.advance();
+		}
+	}
+
+	// skip tokens until one in the synchronization set for error recovery
+	private void skipTo(boolean[] sync) throws IOException {
+		while (token.getType() != TokenType.EOF && !sync[token.getType().ordinal()])
+			token.advance();
+	}
+
+	/*
+	 * Panic mode for a statement that starts with no statement token: skip
+	 * that token and the rest of the statement, up to the next token that
+	 * can start one or a ';', which is skipped too. Braces opened while
+	 * skipping are skipped up to their closing brace, and a '}' that closes
+	 * the enclosing block is left for it.
+	 */
+	private void skipStatement() throws IOException {
+		int depth = 0;
+
+		if (token.getType() != TokenType.RBRACE && token.getType() != TokenType.EOF) {
+			if (token.getType() == TokenType.LBRACE)
+				depth++;
+			token.advance();
+		}
+
+		for (TokenType type; (type = token.getType()) != TokenType.EOF; token.advance()) {
+			if (type == TokenType.LBRACE) {
+				depth++;
+			} else if (type == TokenType.RBRACE) {
+				if (depth == 0)
+					break;
+				depth--;
+			} else if (depth == 0 && STATEMENT_SYNC[type.ordinal()]) {
+				break;
+			}
+		}
+
+		if (token.getType() == TokenType.SEMI)
+			token.advance();
 	}
 
-	// skip tokens until match in follow set for error recovery
-	private void skipTo(TokenType... follow) throws IOException {
-		while (token.getType() != TokenType.EOF) {
-			for (TokenType skip : follow) {
-				if (token.getType() == skip)
-					return;
+	/*
+	 * The tokens that can follow the nonterminals, where parsing can leave
+	 * them, and if resume is set also the ones that can start them, where
+	 * parsing can pick them up again.
+	 */
+	private static boolean[] syncSet(Grammar grammar, boolean resume, NonTerminal... nonterminals) {
+		boolean[] set = new boolean[TokenType.values().length];
+
+		for (TokenType type : TokenType.values()) {
+			for (NonTerminal nonterminal : nonterminals) {
+				if (grammar.inFollow(nonterminal, type) || resume && grammar.inFirst(nonterminal, type))
+					set[type.ordinal()] = true;
 			}
-			token = lexer.getToken();
 		}
+		return set;
+	}
+
+	// the symbol lists are kept by parseProgram() and streamed by parse()
+	private void declaration(VarDecl varDecl, int start, int end) {
+		if (listener == null)
+			decelarations.add(varDecl);
+		else
+			listener.onDeclaration(varDecl.getType(), varDecl.getId(), start, end);
+	}
+
+	private void identifier(Identifier id) {
+		if (listener == null)
+			identifiers.add(id);
+		else
+			listener.onIdentifier(id);
+	}
+
+	private void assign(Assign assign) {
+		if (listener == null)
+			assigns.add(assign);
+		else
+			listener.onAssign(assign.getId(), assign.getValue());
+	}
+
+	// the symbol list keeps an element assignment as an Assign to the array
+	private void arrayAssign(Assign assign, Exp index) {
+		if (listener == null)
+			assigns.add(assign);
+		else
+			listener.onArrayAssign(assign.getId(), index, assign.getValue());
+	}
+
+	private void condition(Exp condExp) {
+		if (listener == null)
+			conditions.add(condExp);
+		else
+			listener.onCondition(condExp);
+	}
+
+	// give a new node the next dense id
+	private <T extends Node> T node(T node) {
+		node.setNodeId(nodes++);
+
+		if (created != null)
+			created.add(node);
+		return node;
+	}
+
+	// number of ids handed out, the capacity a NodeTable for this tree needs
+	public synchronized int getNodeCount() {
+		return nodes;
+	}
+
+	// record the token range of a statement or symbol list entry for reparse()
+	private <T> T span(T node, int start, int end) {
+		if (spanStarts == null || node == null)
+			return node;
+
+		int id = ((Node) node).getNodeId();
+		if (id >= spanStarts.length) {
+			int capacity = Math.max(spanStarts.length * 2, id + 1);
+			spanStarts = Arrays.copyOf(spanStarts, capacity);
+			spanEnds = Arrays.copyOf(spanEnds, capacity);
+			spanEdits = Arrays.copyOf(spanEdits, capacity);
+		}
+		spanStarts[id] = start;
+		spanEnds[id] = end;
+		spanEdits[id] = edits;
+		return node;
+	}
+
+	/*
+	 * The span of a node in the current tokens. An edit only records where
+	 * it moved the tokens, and a span is moved past the edits recorded since
+	 * it was when it is read, so an edit does not visit the nodes after it.
+	 */
+	private int spanStart(Object node) {
+		return spanStarts[moveSpan(((Node) node).getNodeId())];
+	}
+
+	private int spanEnd(Object node) {
+		return spanEnds[moveSpan(((Node) node).getNodeId())];
+	}
+
+	private int moveSpan(int id) {
+		for (int edit = spanEdits[id]; edit < edits; edit++) {
+			if (spanStarts[id] >= editTokens[edit])
+				spanStarts[id] += editShifts[edit];
+			if (spanEnds[id] >= editTokens[edit])
+				spanEnds[id] += editShifts[edit];
+		}
+		spanEdits[id] = edits;
+		return id;
+	}
+
+	// record that the tokens from first on moved by shift
+	private void edit(int first, int shift) {
+		if (edits == editTokens.length) {
+			editTokens = Arrays.copyOf(editTokens, edits * 2);
+			editShifts = Arrays.copyOf(editShifts, edits * 2);
+		}
+		editTokens[edits] = first;
+		editShifts[edits] = shift;
+		edits++;
+	}
+
+	// hand out count ids at once for the nodes of a LazyBlock
+	private synchronized int reserveNodes(int count) {
+		int base = nodes;
+		nodes += count;
+		return base;
 	}
 
 	// number of reported syntax errors
@@ -91,190 +475,590 @@ public class Parser {
 		return errors;
 	}
 
+	// the messages of all errors, one per line
 	public String getErrorMessage() {
-		return errorMessage;
+		StringBuilder message = new StringBuilder();
+
+		for (String diagnostic : diagnostics)
+			message.append(diagnostic);
+		return message.toString();
+	}
+
+	public List<String> getDiagnostics() {
+		return diagnostics;
+	}
+
+	/*
+	 * Stop parsing after maxErrors syntax errors. The rest of the input is
+	 * skipped and the constructs still open end as if it ended there, so
+	 * garbage input costs at most maxErrors messages.
+	 */
+	public void setMaxErrors(int maxErrors) {
+		this.maxErrors = Math.max(maxErrors, 1);
 	}
 
-	public ArrayList <VarDecl> getDecelarations() {
+	public List <VarDecl> getDecelarations() {
 		return decelarations;
 	}
 
-	public ArrayList <Identifier> getIdentifiers() {
+	public List <Identifier> getIdentifiers() {
 		return identifiers;
 	}
 
-	public ArrayList <Assign> getAssigns() {
+	public List <Assign> getAssigns() {
 		return assigns;
 	}
 
-	public ArrayList <Exp> getConditions() {
+	public List <Exp> getConditions() {
 		return conditions;
 	}
 
+	public Program parseProgram() throws IOException {
+		return (Program) objects.take(parseRoot());
+	}
+
 	// Program ::= int main '('')' { Declarations StatementList }
-	public Program parseProgram() throws IOException {		
+	private int parseRoot() throws IOException {
+		int start = token.getIndex();
+
 		eat(TokenType.INT);
 		eat(TokenType.MAIN);
 		eat(TokenType.LPAREN);
 		eat(TokenType.RPAREN);
 		eat(TokenType.LBRACE);
 
-		Declarations declarations = parseDeclarations();
-		StatementList statementList = parseStatementList();
+		int declarations = parseDeclarations();
+		int statementList = parseStatementList();
 
 		eat(TokenType.RBRACE);
 		eat(TokenType.EOF);
-		return new Program(statementList, declarations);
+		return builder.add(NodeKind.PROGRAM, declarations, statementList, NONE, start, token.getIndex());
 	}
 
-	// Declarations ::= { VarDeclList }
-	private Declarations parseDeclarations() throws IOException{
-		Declarations declarations = new Declarations();
+	/*
+	 * Streaming mode: parse the same grammar as parseProgram() and pass the
+	 * declarations, identifiers, assignments, conditions and errors to the
+	 * listener instead of keeping them. Statements are dropped once parsed,
+	 * so memory use is bounded by the nesting of the input and the number of
+	 * errors, not its length. The errors go to onError() and are kept for
+	 * getErrorMessage() as in parseProgram(); setMaxErrors() bounds them.
+	 */
+	public void parse(ParseListener listener) throws IOException {
+		this.listener = listener;
+		try {
+			objects.take(parseRoot());
+		} finally {
+			this.listener = null;
+		}
+	}
 
-		while(token.getType() == TokenType.INT || token.getType() == TokenType.FLOAT
-				|| token.getType() == TokenType.BOOLEAN || token.getType() == TokenType.CHAR)
-			declarations.addElement(parseVarDecList());
+	/*
+	 * Lazy mode: parse the program like parseProgram(), but return every
+	 * block whose braces balance as a LazyBlock that parses its statements
+	 * when first asked for them. Callers that only look at the declarations
+	 * or the top level statements skip the work for the block contents.
+	 * Only a parser over a TokenBuffer can do this, the blocks are parsed
+	 * again from the buffer.
+	 *
+	 * Errors and symbol list entries from inside lazy blocks are not
+	 * reported here, see LazyBlock. On input with errors inside a block the
+	 * tree can differ from the one of parseProgram(), since recovery inside
+	 * a lazy block stops at its closing brace.
+	 */
+	public Program parseLazyProgram() throws IOException {
+		if (tokens == null)
+			throw new IllegalStateException("Lazy blocks need a parser over a TokenBuffer");
+
+		lazy = true;
+		try {
+			return parseProgram();
+		} finally {
+			lazy = false;
+		}
+	}
+
+	// parse the statements of a LazyBlock and number its nodes after the tree so far
+	StatementList parseLazyStatements() throws IOException {
+		StatementList stms = (StatementList) objects.take(parseBlockStatements(NodeKind.STATEMENT_LIST));
+		int base = root.reserveNodes(created.size());
 
-		return declarations;
+		for (int i = 0; i < created.size(); i++)
+			created.get(i).setNodeId(base + i);
+
+		created = null;
+		return stms;
 	}
 
-	// VarDeclList ::= VarDecl { , Identifier };
-	private VarDeclList parseVarDecList() throws IOException{
-		VarDeclList varDeclList = new VarDeclList();
-		VarDecl varDecl = parseVarDecl();
-		varDeclList.addElement(varDecl);
-		getDecelarations().add(varDecl);
+	/*
+	 * Parse like parseProgram(), with the top level statements split into
+	 * chunks of at least chunkSize tokens that are parsed concurrently on
+	 * pool. A pre-scan of the token buffer only cuts after a statement ends
+	 * at brace depth 0 and no else follows, so on valid input every chunk
+	 * starts with a statement. Statements, symbol lists, errors and node ids
+	 * are merged in order. Error recovery can run past the end of a chunk;
+	 * the statements from such a chunk on are parsed again sequentially, so
+	 * the result is always the same as the one of parseProgram().
+	 */
+	public Program parseProgramParallel(ForkJoinPool pool, int chunkSize) throws IOException {
+		if (tokens == null)
+			throw new IllegalStateException("Parallel parsing needs a parser over a TokenBuffer");
 
-		// check for additional varDecl
-		while (token.getType() == TokenType.COMMA) {
-			eat(TokenType.COMMA);
-			VarDecl newVarDecl = new VarDecl(varDecl.getType(), parseIdentifier());
-			varDeclList.addElement(newVarDecl);
-			getDecelarations().add(newVarDecl);
+		eat(TokenType.INT);
+		eat(TokenType.MAIN);
+		eat(TokenType.LPAREN);
+		eat(TokenType.RPAREN);
+		eat(TokenType.LBRACE);
+
+		int declarations = parseDeclarations();
+		StatementList statementList = new StatementList();
+		List<ChunkTask> chunks = splitStatements(Math.max(chunkSize, 1));
+
+		if (chunks.size() > 1) {
+			pool.invoke(new RecursiveTask<Void>() {
+				protected Void compute() {
+					ForkJoinTask.invokeAll(chunks);
+					return null;
+				}
+			});
+
+			for (ChunkTask chunk : chunks) {
+				Parser parser = chunk.parser;
+
+				// recovery went past the next chunk or the error budget runs out in it,
+				// continue sequentially from this one
+				if (parser.token.getIndex() != chunk.end || parser.errorIndex >= chunk.end
+						|| errors + parser.errors >= maxErrors)
+					break;
+
+				for (int i = 0; i < chunk.statements.size(); i++)
+					statementList.addElement(chunk.statements.elementAt(i));
+
+				identifiers.addAll(parser.identifiers);
+				assigns.addAll(parser.assigns);
+				conditions.addAll(parser.conditions);
+				errors += parser.errors;
+				diagnostics.addAll(parser.diagnostics);
+
+				int base = reserveNodes(parser.created.size());
+				for (int i = 0; i < parser.created.size(); i++)
+					parser.created.get(i).setNodeId(base + i);
+
+				if (parser.errorIndex != -1)
+					errorIndex = parser.errorIndex;
+				token = parser.token;
+			}
 		}
-		eat(TokenType.SEMI);
 
-		return varDeclList;
+		while (isStatement())
+			statementList.addElement(statement());
+
+		eat(TokenType.RBRACE);
+		eat(TokenType.EOF);
+		return new Program(statementList, (Declarations) objects.take(declarations));
 	}
 
-	// VarDecl ::= Type Identifier
-	private VarDecl parseVarDecl() throws IOException {
-		Type type = parseType();
-		Identifier id = parseIdentifier();
-		return new VarDecl(type, id);
+	public Program parseProgramParallel() throws IOException {
+		return parseProgramParallel(ForkJoinPool.commonPool(), 1 << 16);
 	}
 
 	/*
-	 * Type ::= int | int '['integer']' | float | float'['integer']' | boolean | boolean'['integer']' | char | char'['integer']'
-	 * int (IntegerType)
-	 * int [integer] (IntArrayType)
-	 * float (FloatType)
-	 * float[integer] (FloatArrayType)
-	 * boolean (BooleanType)
-	 * boolean[integer] (BooleanArrayType)
+	 * Pre-scan for parseProgramParallel(): cut the tokens from the current
+	 * one up to the closing brace of main into chunks. The last chunk ends
+	 * at that brace, or at EOF if the braces do not balance. Every chunk
+	 * parser starts from the error index of this one, so an error on the
+	 * first token of the statements is reported once, as by parseProgram().
 	 */
-	private Type parseType() throws IOException {
-		switch (token.getType()) {
+	private List<ChunkTask> splitStatements(int chunkSize) {
+		List<ChunkTask> chunks = new ArrayList<ChunkTask>();
+		int start = token.getIndex();
+		int depth = 0;
+		int i = start;
+
+		for (; i < tokens.size() && depth >= 0; i++) {
+			switch (tokens.getType(i)) {
+			case LBRACE:
+				depth++;
+				continue;
+			case RBRACE:
+				depth--;
+				break;
+			case SEMI:
+				break;
+			case EOF:
+				depth = -1;
+				continue;
+			default:
+				continue;
+			}
 
-		case INT:
-			eat(TokenType.INT);
+			if (depth == 0 && i + 1 - start >= chunkSize && i + 1 < tokens.size()
+					&& tokens.getType(i + 1) != TokenType.ELSE) {
+				chunks.add(new ChunkTask(chunkParser(start), i + 1));
+				start = i + 1;
+			}
+		}
+		// i is one past the closing brace of main or EOF
+		chunks.add(new ChunkTask(chunkParser(start), Math.min(i, tokens.size()) - 1));
+		return chunks;
+	}
 
-			// check for integer array type
-			if (token.getType() == TokenType.LBRACKET) {
-				eat(TokenType.LBRACKET);
+	private Parser chunkParser(int start) {
+		Parser parser = new Parser(tokens, start);
 
-				// check array size integer
-				if(eat(TokenType.INT_CONST)){
-					if (token.getType() == TokenType.RBRACKET) {
-						eat(TokenType.RBRACKET);
-						return new IntegerArrayType();
-					}
-				}
+		parser.errorIndex = errorIndex;
+		return parser;
+	}
 
-				// invalid integer type declaration
-				eat(TokenType.TYPE);
-				return null;
+	// parses the statements of one chunk of parseProgramParallel()
+	private static class ChunkTask extends RecursiveTask<StatementList> {
+		private static final long serialVersionUID = 1L;
+
+		private Parser parser;
+		private int end;
+		private StatementList statements;
+
+		ChunkTask(Parser parser, int end) {
+			this.parser = parser;
+			this.end = end;
+		}
+
+		protected StatementList compute() {
+			statements = new StatementList();
+			try {
+				while (parser.token.getIndex() < end && parser.isStatement())
+					statements.addElement(parser.statement());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
-			return new IntegerType();
+			return statements;
+		}
+	}
 
-		case FLOAT:
-			eat(TokenType.FLOAT);
+	/*
+	 * Incremental mode: parse like parseProgram() and record the token
+	 * range of every statement, so reparse() can update the tree after an
+	 * edit by parsing only the statements around it. Needs a parser over a
+	 * TokenBuffer.
+	 */
+	public Program parseIncrementalProgram() throws IOException {
+		if (tokens == null)
+			throw new IllegalStateException("Incremental parsing needs a parser over a TokenBuffer");
+
+		spanStarts = new int[256];
+		spanEnds = new int[256];
+		spanEdits = new int[256];
+		edits = 0;
+		program = parseProgram();
+		return program;
+	}
 
-			// check for integer array type
-			if (token.getType() == TokenType.LBRACKET) {
-				eat(TokenType.LBRACKET);
+	/*
+	 * Apply a text edit to the source of the program of
+	 * parseIncrementalProgram() and return the tree of the edited text.
+	 * The tokens are updated with Lexer.relex(). In the innermost statement
+	 * list around the edit, the statements whose tokens changed are parsed
+	 * again and spliced into the previous Program, which is returned.
+	 * Statements outside of them keep their nodes, ids and symbol list
+	 * entries; new nodes get new ids.
+	 *
+	 * If the previous tree had errors, the edit reaches the declarations or
+	 * the end of main, or the reparsed statements do not end where the kept
+	 * ones start, the whole program is parsed again into a new Program, so
+	 * errors and trees are always those of parseIncrementalProgram().
+	 *
+	 * The work is proportional to the edit: Lexer.relex() scans the edited
+	 * lines, the spans of the nodes after the edit are moved when they are
+	 * read, and the symbol lists and statement lists are BlockLists that
+	 * rebuild only the blocks around the replaced entries. What grows with
+	 * the file is one end index per block of those lists, and what grows
+	 * with the edits are the runs of the tokens and the edits a span is
+	 * moved past, see spanStart().
+	 */
+	public Program reparse(int offset, int removedLength, String insertedText) throws IOException {
+		if (program == null)
+			throw new IllegalStateException("reparse() without parseIncrementalProgram()");
+
+		TokenBuffer previous = tokens;
+		tokens = Lexer.relex(previous, offset, removedLength, insertedText);
+
+		if (errors == 0 && splice(previous, offset, offset + insertedText.length(), insertedText.length() - removedLength))
+			return program;
+
+		token = tokens.cursor();
+		errorIndex = -1;
+		nodes = 0;
+		errors = 0;
+		diagnostics.clear();
+		decelarations.clear();
+		identifiers.clear();
+		assigns.clear();
+		conditions.clear();
+		return parseIncrementalProgram();
+	}
 
-				// check array size integer
-				if(eat(TokenType.INT_CONST)){
-					if (token.getType() == TokenType.RBRACKET) {
-						eat(TokenType.RBRACKET);
-						return new FloatArrayType();
-					}
-				}
+	/*
+	 * Reparse the statements covering the tokens changed by an edit of the
+	 * text at [offset, editEnd) that moved the text after it by delta.
+	 * Tokens before first and from last on are the same in both buffers,
+	 * the ones from last on moved by shift. False if the tree cannot be
+	 * updated in place.
+	 */
+	private boolean splice(TokenBuffer previous, int offset, int editEnd, int delta) throws IOException {
+		int shift = tokens.size() - previous.size();
 
-				// invalid integer type declaration
-				eat(TokenType.TYPE);
-				return null;
-			}
-			return new FloatType();
+		// tokens ending before the edit are unchanged
+		int low = 0, high = previous.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
 
-		case BOOLEAN:
-			eat(TokenType.BOOLEAN);
+			if (previous.getOffset(middle) + previous.getLength(middle) < offset)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		int first = low;
 
-			// check for integer array type
-			if (token.getType() == TokenType.LBRACKET) {
-				eat(TokenType.LBRACKET);
+		// relex() shares the old tokens from the first one a new token lines up with
+		low = firstAtOrAfter(tokens, editEnd);
+		high = tokens.size() - 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			int moved = tokens.getOffset(middle) - delta;
 
-				// check array size integer
-				if(eat(TokenType.INT_CONST)){
-					if (token.getType() == TokenType.RBRACKET) {
-						eat(TokenType.RBRACKET);
-						return new BooleanArrayType();
-					}
-				}
+			if (previous.getOffset(firstAtOrAfter(previous, moved)) == moved)
+				high = middle;
+			else
+				low = middle + 1;
+		}
+		int last = low - shift;
 
-				// invalid integer type declaration
-				eat(TokenType.TYPE);
-				return null;
-			}
-			return new BooleanType();
+		if (last < first || previous.getOffset(last) != tokens.getOffset(low) - delta)
+			return false;
+		if (first <= statementsStart || last > statementsEnd)
+			return false;
 
-		case CHAR:
-			eat(TokenType.CHAR);
+		// find the innermost statement list around the edit
+		StatementList list = program.getStm();
+		int listStart = statementsStart;
+		int listEnd = statementsEnd;
+		boolean top = true;
+		int from, to;
 
-			// check for integer array type
-			if (token.getType() == TokenType.LBRACKET) {
-				eat(TokenType.LBRACKET);
+		while (true) {
+			from = firstStatement(list, first, true);
+			to = firstStatement(list, last, false);
 
-				// check array size integer
-				if(eat(TokenType.INT_CONST)){
-					if (token.getType() == TokenType.RBRACKET) {
-						eat(TokenType.RBRACKET);
-						return new CharArrayType();
-					}
-				}
+			Block block = to == from + 1 ? innerBlock(list.elementAt(from), first, last) : null;
+			if (block == null)
+				break;
 
-				// invalid integer type declaration
-				eat(TokenType.TYPE);
-				return null;
+			list = block.getStms();
+			listStart = spanStart(block) + 1;
+			listEnd = spanEnd(block) - 1;
+			top = false;
+		}
+
+		int start = from > 0 ? spanEnd(list.elementAt(from - 1)) : listStart;
+		int end = to < list.size() ? spanStart(list.elementAt(to)) : listEnd;
+
+		// the entries of the replaced statements, found while the spans are still those before the edit
+		int identifierFrom = firstEntry(identifiers, start), identifierTo = firstEntry(identifiers, end);
+		int assignFrom = firstEntry(assigns, start), assignTo = firstEntry(assigns, end);
+		int conditionFrom = firstEntry(conditions, start), conditionTo = firstEntry(conditions, end);
+
+		// parse the changed statements, their entries go to lists of their own
+		BlockList<Identifier> newIdentifiers = new BlockList<Identifier>();
+		BlockList<Assign> newAssigns = new BlockList<Assign>();
+		BlockList<Exp> newConditions = new BlockList<Exp>();
+		BlockList<Identifier> keptIdentifiers = identifiers;
+		BlockList<Assign> keptAssigns = assigns;
+		BlockList<Exp> keptConditions = conditions;
+		identifiers = newIdentifiers;
+		assigns = newAssigns;
+		conditions = newConditions;
+
+		edit(last, shift);
+		statementsEnd += shift;
+		StatementList stms = new StatementList();
+		token = tokens.cursor(start);
+
+		try {
+			while (token.getIndex() < end + shift && (top ? isStatement()
+					: token.getType() != TokenType.RBRACE && token.getType() != TokenType.EOF))
+				stms.addElement(statement());
+		} finally {
+			identifiers = keptIdentifiers;
+			assigns = keptAssigns;
+			conditions = keptConditions;
+		}
+
+		if (errors != 0 || token.getIndex() != end + shift)
+			return false;
+
+		identifiers.replace(identifierFrom, identifierTo, newIdentifiers);
+		assigns.replace(assignFrom, assignTo, newAssigns);
+		conditions.replace(conditionFrom, conditionTo, newConditions);
+		list.replace(from, to, stms);
+		token = tokens.cursor(tokens.size() - 1);
+		return true;
+	}
+
+	// index of the first of entries starting at or after token start
+	private int firstEntry(BlockList<?> entries, int start) {
+		int low = 0, high = entries.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (spanStart(entries.get(middle)) < start)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	// index of the first statement of list whose span starts, or ends if byEnd, at or after token
+	private int firstStatement(StatementList list, int token, boolean byEnd) {
+		int low = 0, high = list.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			Statement stm = list.elementAt(middle);
+
+			if ((byEnd ? spanEnd(stm) : spanStart(stm)) < token)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	// index of the first token at or after offset
+	private static int firstAtOrAfter(TokenBuffer tokens, int offset) {
+		int low = 0, high = tokens.size() - 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (tokens.getOffset(middle) < offset)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	// innermost block in stm whose statements hold the changed tokens [first, last)
+	private Block innerBlock(Statement stm, int first, int last) {
+		Block block = null;
+
+		while (stm != null && spanStart(stm) < first && last <= spanEnd(stm)) {
+			if (stm instanceof Block) {
+				// the braces themselves must be unchanged
+				if (last < spanEnd(stm))
+					block = (Block) stm;
+				break;
+			} else if (stm instanceof If) {
+				If ifStm = (If) stm;
+				Statement falseStm = ifStm.getFalseStm();
+
+				stm = falseStm != null && spanStart(falseStm) < first ? falseStm : ifStm.getTrueStm();
+			} else if (stm instanceof While) {
+				stm = ((While) stm).getStm();
+			} else {
+				break;
 			}
-			return new CharType();
+		}
+		return block;
+	}
 
-		default:
+	// Declarations ::= { VarDeclList }
+	private int parseDeclarations() throws IOException {
+		int start = token.getIndex();
+		int list = builder.beginList(NodeKind.DECLARATIONS);
+
+		while(token.getType() == TokenType.INT || token.getType() == TokenType.FLOAT
+				|| token.getType() == TokenType.BOOLEAN || token.getType() == TokenType.CHAR)
+			builder.addElement(list, parseVarDecList());
+
+		return builder.endList(NodeKind.DECLARATIONS, list, start, token.getIndex());
+	}
+
+	// VarDeclList ::= VarDecl { , Identifier };
+	private int parseVarDecList() throws IOException {
+		int start = token.getIndex();
+		int list = builder.beginList(NodeKind.VAR_DECL_LIST);
+
+		// VarDecl ::= Type Identifier, the following ones share the type node
+		int type = parseType();
+		int id = parseIdentifier();
+		builder.addElement(list, builder.add(NodeKind.VAR_DECL, type, id, NONE, start, token.getIndex()));
+
+		// check for additional varDecl
+		while (token.getType() == TokenType.COMMA) {
+			eat(TokenType.COMMA);
+			int idStart = token.getIndex();
+			id = parseIdentifier();
+			builder.addElement(list, builder.add(NodeKind.VAR_DECL, type, id, NONE, idStart, token.getIndex()));
+		}
+		eat(TokenType.SEMI);
+
+		return builder.endList(NodeKind.VAR_DECL_LIST, list, start, token.getIndex());
+	}
+
+	/*
+	 * Type ::= int | int '['integer']' | float | float'['integer']' | boolean | boolean'['integer']' | char | char'['integer']'
+	 * int (IntegerType)
+	 * int [integer] (IntArrayType)
+	 * float (FloatType)
+	 * float[integer] (FloatArrayType)
+	 * boolean (BooleanType)
+	 * boolean[integer] (BooleanArrayType)
+	 */
+	private int parseType() throws IOException {
+		int start = token.getIndex();
+		TokenType base = token.getType();
+
+		if (base != TokenType.INT && base != TokenType.FLOAT && base != TokenType.BOOLEAN && base != TokenType.CHAR) {
 			// unknown type
 			eat(TokenType.TYPE);
-			return null;
+			return NONE;
+		}
+		eat(base);
+
+		if (token.getType() != TokenType.LBRACKET)
+			return builder.add(typeKind(base, false), NONE, NONE, NONE, start, token.getIndex());
+
+		// array type, check array size integer
+		eat(TokenType.LBRACKET);
+		if (eat(TokenType.INT_CONST) && token.getType() == TokenType.RBRACKET) {
+			eat(TokenType.RBRACKET);
+			return builder.add(typeKind(base, true), NONE, NONE, NONE, start, token.getIndex());
+		}
+
+		// invalid array type declaration
+		eat(TokenType.TYPE);
+		return NONE;
+	}
 
+	private static NodeKind typeKind(TokenType base, boolean array) {
+		switch (base) {
+		case INT:
+			return array ? NodeKind.INT_ARRAY_TYPE : NodeKind.INT_TYPE;
+		case FLOAT:
+			return array ? NodeKind.FLOAT_ARRAY_TYPE : NodeKind.FLOAT_TYPE;
+		case BOOLEAN:
+			return array ? NodeKind.BOOLEAN_ARRAY_TYPE : NodeKind.BOOLEAN_TYPE;
+		default:
+			return array ? NodeKind.CHAR_ARRAY_TYPE : NodeKind.CHAR_TYPE;
 		}
 	}
 
 	// Identifier ::= Letter { Letter | Digit }
-	private Identifier parseIdentifier() throws IOException {
-		Identifier identifier = null;
+	private int parseIdentifier() throws IOException {
+		int identifier = NONE;
 
 		// grab ID value if token type is ID
 		if (token.getType() == TokenType.ID)
-			identifier = new Identifier(token.getAttribute().getIdVal());
+			identifier = builder.identifier(token.getIdVal(), token.getIndex());
 		
 		eat(TokenType.ID);
 
@@ -282,11 +1066,13 @@ public class Parser {
 	}
 
 	// StatementList ::= { Statement }
-	private StatementList parseStatementList() throws IOException{
-		StatementList statementList = new StatementList();
+	private int parseStatementList() throws IOException {
+		int list = builder.beginList(NodeKind.STATEMENT_LIST);
+		statementsStart = token.getIndex();
 		while (isStatement())
-			statementList.addElement(parseStatement());
-		return statementList;
+			builder.addElement(list, parseStatement());
+		statementsEnd = token.getIndex();
+		return builder.endList(NodeKind.STATEMENT_LIST, list, statementsStart, statementsEnd);
 	}
 
 	// checks the beginning of a new statement 
@@ -304,8 +1090,14 @@ public class Parser {
 		}
 	}
 
+	// a statement of the object tree, for the modes that collect statements themselves
+	private Statement statement() throws IOException {
+		return (Statement) objects.take(parseStatement());
+	}
+
 	// Statement ::= Block | IfStatement | WhileStatement | identifier = Exp | identifier '['Exp']' = Exp
-	private Statement parseStatement() throws IOException {
+	private int parseStatement() throws IOException {
+		int start = token.getIndex();
 
 		// IfStatement ::=  if '('Exp')' Statement [else Statement]
 		if (token.getType() == TokenType.IF) {
@@ -313,48 +1105,26 @@ public class Parser {
 
 			// parse conditional expression
 			if (!eat(TokenType.LPAREN))
-				skipTo(TokenType.RPAREN, TokenType.LBRACE, TokenType.RBRACE);
+				skipTo(CONDITION_SYNC);
 
-			Exp condExp = parseExp();
-			conditions.add(condExp);
-			
-			/*if(condExp instanceof IdentifierExp){
-				IdentifierExp idExp = (IdentifierExp) condExp;
-				Identifier identifier = new Identifier(idExp.getName());
-				identifiers.add(identifier);
-			}*/
+			int condStart = token.getIndex();
+			int condExp = parseExp();
+			condExp = builder.condition(condExp, condStart, token.getIndex());
 
 			if (!eat(TokenType.RPAREN))
-				skipTo(TokenType.LBRACE, TokenType.SEMI, TokenType.RBRACE);
+				skipTo(BODY_SYNC);
 
 			// parse true and false statements
-			Statement trueStm;
-
-			// BLock ::= '{' StatementList '}' 
-			if (token.getType() == TokenType.LBRACE)
-				trueStm = parseBlock();
-
-			else
-				// parse true statement
-				trueStm = parseStatement();
+			int trueStm = parseBody();
+			int falseStm = NONE;
 
 			if (token.getType() == TokenType.ELSE){
 				if (!eat(TokenType.ELSE))
-					skipTo(TokenType.LBRACE, TokenType.SEMI, TokenType.RBRACE);
-
-				Statement falseStm;
+					skipTo(BODY_SYNC);
 
-				// BLock ::= '{' StatementList '}' 
-				if (token.getType() == TokenType.LBRACE)
-					falseStm = parseBlock();
-
-				else
-					// parse false statement
-					falseStm = parseStatement();
-
-				return new If(condExp, trueStm, falseStm);
+				falseStm = parseBody();
 			}
-			return new If(condExp, trueStm, null);
+			return builder.add(NodeKind.IF, condExp, trueStm, falseStm, start, token.getIndex());
 		}
 
 		// WhileStatement ::= while '('Exp')' Statement
@@ -363,250 +1133,675 @@ public class Parser {
 
 			// parse looping condition
 			if (!eat(TokenType.LPAREN))
-				skipTo(TokenType.RPAREN, TokenType.LBRACE, TokenType.RBRACE);
+				skipTo(CONDITION_SYNC);
 
-			Exp condExp = parseExp();
-			conditions.add(condExp);
-			
-			/*if(condExp instanceof IdentifierExp){
-				IdentifierExp idExp = (IdentifierExp) condExp;
-				Identifier identifier = new Identifier(idExp.getName());
-				identifiers.add(identifier);
-			}*/
+			int condStart = token.getIndex();
+			int condExp = parseExp();
+			condExp = builder.condition(condExp, condStart, token.getIndex());
 
 			if (!eat(TokenType.RPAREN))
-				skipTo(TokenType.LBRACE, TokenType.SEMI, TokenType.RBRACE);
+				skipTo(BODY_SYNC);
 
-			Statement loopStm;
+			int loopStm = parseBody();
 
-			// BLock ::= '{' StatementList '}' 
-			if (token.getType() == TokenType.LBRACE)
-				loopStm = parseBlock();
-
-			else
-				// parse looping statement
-				loopStm = parseStatement();
-
-			return new While(condExp, loopStm);
+			return builder.add(NodeKind.WHILE, condExp, loopStm, NONE, start, token.getIndex());
 		}
 
 		// Identifier statement
 		if (token.getType() == TokenType.ID) {
-
-			Identifier id = new Identifier(token.getAttribute().getIdVal());
-			identifiers.add(id);
+			int id = builder.use(NodeKind.IDENTIFIER, token.getIdVal(), start);
 			eat(TokenType.ID);
 
-
 			// Assignment statement: id = Exp ;
 			if (token.getType() == TokenType.ASSIGN) {
 				eat(TokenType.ASSIGN);
-				Exp value = parseExp();
-				
-				/*if(value instanceof IdentifierExp){
-					IdentifierExp idExp = (IdentifierExp) value;
-					Identifier identifier = new Identifier(idExp.getName());
-					identifiers.add(identifier);
-				}*/
-				
+				int value = parseExp();
 				eat(TokenType.SEMI);
 
-				Assign assign = new Assign(id, value);
-				assigns.add(assign);
-				return assign;
+				return builder.add(NodeKind.ASSIGN, id, value, NONE, start, token.getIndex());
 			}
 
 			// Array value assignment statement: id [ Exp ] = Exp ;
 			if (token.getType() == TokenType.LBRACKET) {
 				eat(TokenType.LBRACKET);
-				Exp index = parseExp();
-				
-				if(!(index instanceof IntegerLiteral)){
+				int index = parseExp();
+
+				if (!builder.isIntegerLiteral(index)) {
 					// statement type unknown
+					builder.release(id);
 					eat(TokenType.TYPE);
-					token = lexer.getToken();
-					return null;
+					token.advance();
+					return NONE;
 				}
 
 				if (!eat(TokenType.RBRACKET))
-					skipTo(TokenType.ASSIGN, TokenType.SEMI);
+					skipTo(INDEX_SYNC);
 
 				if (!eat(TokenType.ASSIGN))
-					skipTo(TokenType.SEMI);
-
-				Exp value = parseExp();
-				
-				/*if(value instanceof IdentifierExp){
-					IdentifierExp idExp = (IdentifierExp) value;
-					Identifier identifier = new Identifier(idExp.getName());
-					identifiers.add(identifier);
-				}*/
-				
+					skipTo(VALUE_SYNC);
+
+				int value = parseExp();
 				eat(TokenType.SEMI);
-				
-				Assign assign = new Assign(id, value);
-				assigns.add(assign);
-				return new ArrayAssign(id, index, value);
+
+				return builder.add(NodeKind.ARRAY_ASSIGN, id, index, value, start, token.getIndex());
 			}
+			builder.release(id);
 		}
 
-		// statement type unknown
+		// statement type unknown, panic mode: skip the rest of it in one error
 		eat(TokenType.STATEMENT);
-		token = lexer.getToken();
-		return null;
+		skipStatement();
+		return NONE;
+	}
+
+	// the statement of an if, else or while: a Block or a single statement
+	private int parseBody() throws IOException {
+		return token.getType() == TokenType.LBRACE ? parseBlock() : parseStatement();
 	}
 
-	// BLock ::= '{' StatementList '}'
 	// Block ::= '{' StatementList '}'
-	private Block parseBlock() throws IOException{
+	private int parseBlock() throws IOException {
+		if (lazy) {
+			Block block = skipBlock();
+			if (block != null)
+				return objects.push(block);
+		}
+		return parseBlockStatements(NodeKind.BLOCK);
+	}
+
+	// skip a block with balanced braces and return it as a LazyBlock, null if they do not balance
+	private Block skipBlock() throws IOException {
+		int start = token.getIndex();
+		int depth = 0;
+		token.mark();
+
+		do {
+			if (token.getType() == TokenType.LBRACE)
+				depth++;
+			else if (token.getType() == TokenType.RBRACE)
+				depth--;
+			token.advance();
+		} while (depth > 0 && token.getType() != TokenType.EOF);
+
+		if (depth > 0) {
+			token.rewind();
+			return null;
+		}
+		token.release();
+		return node(new LazyBlock(root, tokens, start, token.getIndex()));
+	}
+
+	// '{' StatementList '}' as a BLOCK, or as the STATEMENT_LIST of a LazyBlock
+	private int parseBlockStatements(NodeKind kind) throws IOException {
+		int start = token.getIndex();
 		eat(TokenType.LBRACE);
 
 		// recursively call parseStatement() until closing brace
-		StatementList stms = new StatementList();
+		int list = builder.beginList(kind);
 		while (token.getType() != TokenType.RBRACE && token.getType() != TokenType.EOF)
-			stms.addElement(parseStatement());
+			builder.addElement(list, parseStatement());
 
 		if (!eat(TokenType.RBRACE)) 
-			skipTo(TokenType.RBRACE, TokenType.SEMI);
+			skipTo(BLOCK_SYNC);
 
-		return new Block(stms);
+		return builder.endList(kind, list, start, token.getIndex());
 	}
 
-	// Exp ::= PrimaryExp | BinopRHS
-	// top-level parsing function for an expression
-	private Exp parseExp() throws IOException {
-		Exp lhs = parsePrimaryExp();
-		return parseBinopRHS(0, lhs); // check for binops following exp
-	}
+	/*
+	 * Exp ::= PrimaryExp | BinopRHS
+	 *
+	 * Precedence climbing over an explicit stack of frames instead of
+	 * recursion, so deeply nested input cannot overflow the thread stack.
+	 * A frame is an exp waiting for its first primary, the operator loop of
+	 * an exp or of a higher precedence rhs, or a '!', '-' or '(' waiting for
+	 * the exp it applies to. The steps are:
+	 *   PRIMARY       parse a primary exp, pushing frames for '!', '-', '('
+	 *   PRIMARY_DONE  hand the primary exp in value to the top frame
+	 *   OPERATOR      take the next operator for the loop of the top frame
+	 *   LOOP_DONE     the loop of the top frame ended with value
+	 */
+	private int parseExp() throws IOException {
+		int base = frames;
+		int step = PRIMARY;
+		int value = NONE;
+		push(EXP_FRAME);
+		frameStarts[base] = token.getIndex();
 
-	// parsePrimaryExp ::= INT_CONST | FLOAT_CONST | CHAR_CONST | BOOLEAN_CONST | NEGATIVE | NOT | Identifier
-	// parse exp before any binop
-	private Exp parsePrimaryExp() throws IOException {
-		switch (token.getType()) {
+		while (true) {
+			int top = frames - 1;
+			int start = token.getIndex();
+
+			switch (step) {
+			case PRIMARY:
+				step = PRIMARY_DONE;
+
+				switch (token.getType()) {
+
+				case INT_CONST:
+					int intValue = token.getIntVal();
+					eat(TokenType.INT_CONST);
+					value = builder.literal(NodeKind.INT_LITERAL, intValue, start);
+					break;
+
+				case FLOAT_CONST:
+					int floatBits = Float.floatToRawIntBits(token.getFloatVal());
+					eat(TokenType.FLOAT_CONST);
+					value = builder.literal(NodeKind.FLOAT_LITERAL, floatBits, start);
+					break;
+
+				case BOOLEAN_CONST:
+					int booleanVal = token.getBooleanVal() ? 1 : 0;
+					eat(TokenType.BOOLEAN_CONST);
+					value = builder.literal(NodeKind.BOOLEAN_LITERAL, booleanVal, start);
+					break;
+
+				case CHAR_CONST:
+					char charVal = token.getCharVal();
+					eat(TokenType.CHAR_CONST);
+					value = builder.literal(NodeKind.CHAR_LITERAL, charVal, start);
+					break;
+
+				case ID:
+					value = builder.use(NodeKind.IDENTIFIER_EXP, token.getIdVal(), start);
+					eat(TokenType.ID);
+					break;
+
+				case NOT:
+					eat(TokenType.NOT);
+					push(NOT_FRAME);
+					frameStarts[top + 1] = start;
+					push(EXP_FRAME);
+					frameStarts[top + 2] = token.getIndex();
+					step = PRIMARY;
+					break;
+
+				case NEGATIVE:
+					eat(TokenType.NEGATIVE);
+					push(NEGATIVE_FRAME);
+					frameStarts[top + 1] = start;
+					push(EXP_FRAME);
+					frameStarts[top + 2] = token.getIndex();
+					step = PRIMARY;
+					break;
+
+				case LPAREN:
+					eat(TokenType.LPAREN);
+					push(PAREN_FRAME);
+					frameStarts[top + 1] = start;
+					push(EXP_FRAME);
+					frameStarts[top + 2] = token.getIndex();
+					step = PRIMARY;
+					break;
+
+				default:
+					// unrecognizable expression
+					eat(TokenType.EXPRESSION);
+					token.advance();
+					value = NONE;
+					break;
+				}
+				break;
 
-		case INT_CONST:
-			int intValue = token.getAttribute().getIntVal();
-			eat(TokenType.INT_CONST);
-			return new IntegerLiteral(intValue);
+			case PRIMARY_DONE:
+				if (frameKinds[top] == EXP_FRAME) {
+					// lhs of a new exp, check for binops following it
+					frameKinds[top] = BINOP_FRAME;
+					frameLevels[top] = 0;
+					frameValues[top] = value;
+				} else if (frameOpLevels[top] < binopLevel()) {
+					// next op has higher precedence than prev op, value becomes its lhs
+					push(NESTED_FRAME);
+					frameLevels[top + 1] = frameOpLevels[top] + 1;
+					frameStarts[top + 1] = frameRhsStarts[top];
+					frameValues[top + 1] = value;
+				} else
+					frameValues[top] = binop(frameOps[top], frameValues[top], value, frameStarts[top]);
+
+				step = OPERATOR;
+				break;
 
-		case FLOAT_CONST:
-			float floatValue = token.getAttribute().getFloatVal();
-			eat(TokenType.FLOAT_CONST);
-			return new FloatLiteral(floatValue);
+			case OPERATOR:
+				int tokenLevel = binopLevel();
 
-		case BOOLEAN_CONST:
-			boolean booleanVal = token.getAttribute().getBooleanVal();
-			eat(TokenType.BOOLEAN_CONST);
-			return new BooleanLiteral(booleanVal);
+				// either op precedence is lower than prev op or token is not an op
+				if (tokenLevel < frameLevels[top]) {
+					value = frameValues[top];
+					step = LOOP_DONE;
+					break;
+				}
 
-		case CHAR_CONST:
-			char charVal = token.getAttribute().getCharVal();
-			eat(TokenType.CHAR_CONST);
-			return new CharLiteral(charVal);
+				// save binop before parsing rhs of exp
+				frameOps[top] = token.getType();
+				frameOpLevels[top] = tokenLevel;
+				eat(frameOps[top]);
+				frameRhsStarts[top] = token.getIndex();
+				step = PRIMARY;
+				break;
 
-		case ID:
-			Identifier id = parseIdentifier();
-			identifiers.add(id);
-			return new IdentifierExp(id.getName());
+			case LOOP_DONE:
+				int kind = frameKinds[top];
+				pop();
 
-		case NOT:
-			eat(TokenType.NOT);
-			return new Not(parseExp());
+				// value is the rhs of the operator of the frame below
+				if (kind == NESTED_FRAME) {
+					frameValues[top - 1] = binop(frameOps[top - 1], frameValues[top - 1], value, frameStarts[top - 1]);
+					step = OPERATOR;
+					break;
+				}
 
-		case NEGATIVE:
-			eat(TokenType.NEGATIVE);
-			return new Negative(parseExp());
+				// value is a complete exp
+				if (frames == base)
+					return value;
 
-		case LPAREN:
-			eat(TokenType.LPAREN);
-			Exp exp = parseExp();
-			eat(TokenType.RPAREN);
-			return exp;
+				if (frameKinds[top - 1] == NOT_FRAME)
+					value = builder.add(NodeKind.NOT, value, NONE, NONE, frameStarts[top - 1], token.getIndex());
+				else if (frameKinds[top - 1] == NEGATIVE_FRAME)
+					value = builder.add(NodeKind.NEGATIVE, value, NONE, NONE, frameStarts[top - 1], token.getIndex());
+				else
+					eat(TokenType.RPAREN);
 
+				pop();
+				step = PRIMARY_DONE;
+				break;
+			}
+		}
+	}
+
+	// build node for exp
+	private int binop(TokenType binop, int lhs, int rhs, int start) throws IOException {
+		NodeKind kind;
+		switch (binop) {
+		case AND:
+			kind = NodeKind.AND;
+			break;
+		case OR:
+			kind = NodeKind.OR;
+			break;
+		case EQ:
+			kind = NodeKind.EQUAL;
+			break;
+		case NEQ:
+			kind = NodeKind.NOT_EQUAL;
+			break;
+		case LT:
+			kind = NodeKind.LESS_THAN;
+			break;
+		case RT:
+			kind = NodeKind.MORE_THAN;
+			break;
+		case LT_EQ:
+			kind = NodeKind.LESS_THAN_EQUAL;
+			break;
+		case RT_EQ:
+			kind = NodeKind.MORE_THAN_EQUAL;
+			break;
+		case PLUS:
+			kind = NodeKind.PLUS;
+			break;
+		case MINUS:
+			kind = NodeKind.MINUS;
+			break;
+		case TIMES:
+			kind = NodeKind.TIMES;
+			break;
+		case DIV:
+			kind = NodeKind.DIVIDE;
+			break;
+		case MOD:
+			kind = NodeKind.MODULES;
+			break;
+		case LBRACKET:
+			kind = NodeKind.ARRAY_LOOKUP;
+			eat(TokenType.RBRACKET);
+			break;
 		default:
-			// unrecognizable expression
-			eat(TokenType.EXPRESSION);
-			token = lexer.getToken();
-			return null;
+			eat(TokenType.OPERATOR);
+			builder.release(rhs);
+			return lhs;
 		}
+		return builder.add(kind, lhs, rhs, NONE, start, token.getIndex());
 	}
 
-	// parse expressions according to operator precedence levels
-	private Exp parseBinopRHS(int level, Exp lhs) throws IOException {
-		// continuously parse exp until a lower order operator comes up
-		while (true) {
-			// grab operator precedence (-1 for non-operator token)
-			Integer val = binopLevels.get(token.getType());
-			int tokenLevel = (val != null) ? val.intValue() : -1;
+	// precedence level of the current token, -1 for non-operator tokens
+	private int binopLevel() {
+		return levels[token.getType().ordinal()];
+	}
 
-			// either op precedence is lower than prev op or token is not an op
-			if (tokenLevel < level)
-				return lhs;
+	private void push(int kind) {
+		if (frames == frameKinds.length) {
+			int capacity = frames * 2;
+			frameKinds = Arrays.copyOf(frameKinds, capacity);
+			frameLevels = Arrays.copyOf(frameLevels, capacity);
+			frameOpLevels = Arrays.copyOf(frameOpLevels, capacity);
+			frameOps = Arrays.copyOf(frameOps, capacity);
+			frameValues = Arrays.copyOf(frameValues, capacity);
+			frameStarts = Arrays.copyOf(frameStarts, capacity);
+			frameRhsStarts = Arrays.copyOf(frameRhsStarts, capacity);
+		}
+		frameKinds[frames++] = kind;
+	}
 
-			// save binop before parsing rhs of exp
-			TokenType binop = token.getType();
-			eat(binop);
+	private void pop() {
+		frames--;
+	}
 
-			Exp rhs = parsePrimaryExp(); // parse rhs of exp
+	/*
+	 * Flat mode: parse the same grammar as parseProgram() but emit the nodes
+	 * into a FlatAst instead of allocating an object per node. Errors are
+	 * reported exactly as by parseProgram(). The symbol lists are not filled,
+	 * their nodes can be found by scanning the tree for their kind.
+	 */
+	public FlatAst parseFlatProgram() throws IOException {
+		FlatBuilder flat = new FlatBuilder();
+
+		builder = flat;
+		try {
+			flat.tree.setRoot(parseRoot());
+		} finally {
+			builder = objects;
+		}
+		flat.tree.trim();
+		return flat.tree;
+	}
 
-			// grab operator precedence (-1 for non-operator token)
-			val = binopLevels.get(token.getType());
-			int nextLevel = (val != null) ? val.intValue() : -1;
+	/*
+	 * Builds the object tree. A handle is a slot of a stack of the nodes
+	 * that have no parent yet, and a node takes the slot of its first
+	 * child, so the stack is as deep as the constructs still open. It also
+	 * fills the symbol lists, or passes their entries to the listener, and
+	 * records the spans of incremental mode.
+	 */
+	private class ObjectBuilder implements TreeBuilder {
+		private Object[] values = new Object[64];
+		private int count;
+		private int used; // slots that may still reference nodes
 
-			// if next op has higher precedence than prev op, make recursive call
-			if (tokenLevel < nextLevel)
-				rhs = parseBinopRHS(tokenLevel + 1, rhs);
+		public int add(NodeKind kind, int first, int second, int third, int start, int end) {
+			Object node;
 
-			// build AST for exp
-			switch (binop) {
+			switch (kind) {
+			case PROGRAM:
+				node = new Program((StatementList) values[second], (Declarations) values[first]);
+				break;
+			case VAR_DECL:
+				VarDecl varDecl = new VarDecl((Type) value(first), (Identifier) value(second));
+				declaration(varDecl, start, end);
+
+				// the type stays for the next declaration of the list
+				return put(second != NONE ? second : count, varDecl);
+			case INT_TYPE:
+				node = node(new IntegerType());
+				break;
+			case INT_ARRAY_TYPE:
+				node = node(new IntegerArrayType());
+				break;
+			case FLOAT_TYPE:
+				node = node(new FloatType());
+				break;
+			case FLOAT_ARRAY_TYPE:
+				node = node(new FloatArrayType());
+				break;
+			case BOOLEAN_TYPE:
+				node = node(new BooleanType());
+				break;
+			case BOOLEAN_ARRAY_TYPE:
+				node = node(new BooleanArrayType());
+				break;
+			case CHAR_TYPE:
+				node = node(new CharType());
+				break;
+			case CHAR_ARRAY_TYPE:
+				node = node(new CharArrayType());
+				break;
+			case IF:
+				node = span(node(new If(exp(first), statement(second), statement(third))), start, end);
+				break;
+			case WHILE:
+				node = span(node(new While(exp(first), statement(second))), start, end);
+				break;
+			case ASSIGN:
+				Assign assign = span(node(new Assign((Identifier) value(first), exp(second))), start, end);
+				assign(assign);
+				node = assign;
+				break;
+			case ARRAY_ASSIGN:
+				Assign element = span(node(new Assign((Identifier) value(first), exp(third))), start, end);
+				arrayAssign(element, exp(second));
+				node = span(node(new ArrayAssign((Identifier) value(first), exp(second), exp(third))), start, end);
+				break;
 			case AND:
-				lhs = new And(lhs, rhs);
+				node = node(new And(exp(first), exp(second)));
 				break;
 			case OR:
-				lhs = new Or(lhs, rhs);
+				node = node(new Or(exp(first), exp(second)));
 				break;
-			case EQ:
-				lhs = new Equal(lhs, rhs);
+			case EQUAL:
+				node = node(new Equal(exp(first), exp(second)));
 				break;
-			case NEQ:
-				lhs = new NotEqual(lhs, rhs);
+			case NOT_EQUAL:
+				node = node(new NotEqual(exp(first), exp(second)));
 				break;
-			case LT:
-				lhs = new LessThan(lhs, rhs);
+			case LESS_THAN:
+				node = node(new LessThan(exp(first), exp(second)));
 				break;
-			case RT:
-				lhs = new MoreThan(lhs, rhs);
+			case MORE_THAN:
+				node = node(new MoreThan(exp(first), exp(second)));
 				break;
-			case LT_EQ:
-				lhs = new LessThanEqual(lhs, rhs);
+			case LESS_THAN_EQUAL:
+				node = node(new LessThanEqual(exp(first), exp(second)));
 				break;
-			case RT_EQ:
-				lhs = new MoreThanEqual(lhs, rhs);
+			case MORE_THAN_EQUAL:
+				node = node(new MoreThanEqual(exp(first), exp(second)));
 				break;
 			case PLUS:
-				lhs = new Plus(lhs, rhs);
+				node = node(new Plus(exp(first), exp(second)));
 				break;
 			case MINUS:
-				lhs = new Minus(lhs, rhs);
+				node = node(new Minus(exp(first), exp(second)));
 				break;
 			case TIMES:
-				lhs = new Times(lhs, rhs);
+				node = node(new Times(exp(first), exp(second)));
 				break;
-			case DIV:
-				lhs = new Divide(lhs, rhs);
+			case DIVIDE:
+				node = node(new Divide(exp(first), exp(second)));
 				break;
-			case MOD:
-				lhs = new Modules(lhs, rhs);
+			case MODULES:
+				node = node(new Modules(exp(first), exp(second)));
 				break;
-			case LBRACKET:
-				lhs = new ArrayLookup(lhs, rhs);
-				eat(TokenType.RBRACKET);
+			case ARRAY_LOOKUP:
+				node = node(new ArrayLookup(exp(first), exp(second)));
 				break;
-			default:
-				eat(TokenType.OPERATOR);
+			case NOT:
+				node = node(new Not(exp(first)));
+				break;
+			case NEGATIVE:
+				node = node(new Negative(exp(first)));
 				break;
+			default:
+				throw new IllegalArgumentException(kind + " is not built by add()");
+			}
+			return put(lowest(first, second, third), node);
+		}
+
+		public int literal(NodeKind kind, int value, int start) {
+			switch (kind) {
+			case INT_LITERAL:
+				return push(node(new IntegerLiteral(value)));
+			case FLOAT_LITERAL:
+				return push(node(new FloatLiteral(Float.intBitsToFloat(value))));
+			case BOOLEAN_LITERAL:
+				return push(node(new BooleanLiteral(value != 0)));
+			default:
+				return push(node(new CharLiteral((char) value)));
+			}
+		}
+
+		public int identifier(String name, int start) {
+			return push(node(new Identifier(name)));
+		}
+
+		public int use(NodeKind kind, String name, int start) {
+			Identifier id = span(node(new Identifier(name)), start, start + 1);
+			Parser.this.identifier(id);
+
+			if (kind == NodeKind.IDENTIFIER_EXP)
+				return push(node(new IdentifierExp(name)));
+			return push(id);
+		}
+
+		public int condition(int exp, int start, int end) {
+			Parser.this.condition(span(exp(exp), start, end));
+			return exp;
+		}
+
+		public int beginList(NodeKind kind) {
+			switch (kind) {
+			case DECLARATIONS:
+				return push(new Declarations());
+			case VAR_DECL_LIST:
+				return push(new VarDeclList());
+			default:
+				return push(new StatementList());
+			}
+		}
+
+		// a streamed list does not hold on to its elements
+		public void addElement(int list, int element) {
+			if (listener == null) {
+				Object elements = values[list];
+
+				if (elements instanceof StatementList)
+					((StatementList) elements).addElement(statement(element));
+				else if (elements instanceof VarDeclList)
+					((VarDeclList) elements).addElement((VarDecl) value(element));
+				else
+					((Declarations) elements).addElement((VarDeclList) value(element));
 			}
+			release(element);
+		}
+
+		public int endList(NodeKind kind, int list, int start, int end) {
+			if (kind == NodeKind.BLOCK)
+				return put(list, span(node(new Block((StatementList) values[list])), start, end));
+
+			count = list + 1;
+			return list;
+		}
+
+		public void release(int node) {
+			if (node != NONE)
+				count = node;
+		}
+
+		public boolean isIntegerLiteral(int exp) {
+			return value(exp) instanceof IntegerLiteral;
+		}
+
+		// a node built elsewhere, such as a LazyBlock
+		int push(Object node) {
+			return put(count, node);
+		}
+
+		// the node of a handle, releasing it and the references above it
+		Object take(int node) {
+			if (node == NONE)
+				return null;
+
+			Object value = values[node];
+			count = node;
+			Arrays.fill(values, count, used, null);
+			used = count;
+			return value;
+		}
+
+		// drop the references to the nodes of an abandoned parse
+		void clear() {
+			count = 0;
+			Arrays.fill(values, 0, used, null);
+			used = 0;
+		}
+
+		private int put(int slot, Object node) {
+			if (slot == values.length)
+				values = Arrays.copyOf(values, values.length * 2);
+
+			values[slot] = node;
+			count = slot + 1;
+			used = Math.max(used, count);
+			return slot;
+		}
+
+		// slot of the first child, the next free one without children
+		private int lowest(int first, int second, int third) {
+			int slot = count;
+
+			if (first != NONE && first < slot)
+				slot = first;
+			if (second != NONE && second < slot)
+				slot = second;
+			if (third != NONE && third < slot)
+				slot = third;
+			return slot;
+		}
+
+		private Object value(int node) {
+			return node == NONE ? null : values[node];
+		}
+
+		private Exp exp(int node) {
+			return (Exp) value(node);
+		}
+
+		private Statement statement(int node) {
+			return (Statement) value(node);
 		}
 	}
 
-}
\ No newline at end of file
+	// builds the FlatAst of parseFlatProgram()
+	private static class FlatBuilder implements TreeBuilder {
+		private final FlatAst tree = new FlatAst();
+
+		public int add(NodeKind kind, int first, int second, int third, int start, int end) {
+			// only IF and ARRAY_ASSIGN have a third child, in the payload
+			int payload = kind == NodeKind.IF || kind == NodeKind.ARRAY_ASSIGN ? third : 0;
+
+			return tree.add(kind, first, second, payload, start, end);
+		}
+
+		public int literal(NodeKind kind, int value, int start) {
+			return tree.add(kind, NONE, NONE, value, start, start + 1);
+		}
+
+		public int identifier(String name, int start) {
+			return tree.add(NodeKind.IDENTIFIER, NONE, NONE, tree.name(name), start, start + 1);
+		}
+
+		public int use(NodeKind kind, String name, int start) {
+			return tree.add(kind, NONE, NONE, tree.name(name), start, start + 1);
+		}
+
+		public int condition(int exp, int start, int end) {
+			return exp;
+		}
+
+		public int beginList(NodeKind kind) {
+			return tree.beginList();
+		}
+
+		public void addElement(int list, int element) {
+			tree.addElement(element);
+		}
+
+		public int endList(NodeKind kind, int list, int start, int end) {
+			return tree.endList(kind, list, start, end);
+		}
+
+		// a released node stays in the arrays, unreferenced
+		public void release(int node) {
+		}
+
+		public boolean isIntegerLiteral(int exp) {
+			return exp != NONE && tree.getKind(exp) == NodeKind.INT_LITERAL;
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package parser;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import lexer.Lexer;
+
+/*
+ * Checks that parseProgramParallel() gives the same result as
+ * parseProgram(): statements, symbol lists, node count and every syntax
+ * error, on valid input and on input broken at random tokens. Exits with
+ * status 1 on the first difference.
+ */
+public class TestParallelParser {
+    private static final String[] STATEMENTS = {
+        "x = 1;", "y = x + 2 * 3;", "if (x < y) { x = 6; } else { y = 10; }",
+        "while (x != 4) { x = 6; y = 10; }", "a[2] = x;", "{ x = y; { y = x; } }"
+    };
+    private static final String[] NOISE = { "(", ")", "{", "}", ";", "=", "+", "else", "int", "1.5", "'c'" };
+
+    public static void main(String[] args) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 17);
+        int checked = 0;
+
+        StringBuilder repeated = new StringBuilder("int main() { int x ( ;");
+        for (int i = 0; i < 40; i++)
+            repeated.append(" x = 1;");
+        checked += check(repeated.append(" }").toString(), pool, 8);
+
+        for (int i = 0; i < 500; i++) {
+            String source = program(random, 20 + random.nextInt(40), i % 2 == 0 ? 0 : 1 + random.nextInt(4));
+
+            for (int chunkSize : new int[] { 1, 8, 64 })
+                checked += check(source, pool, chunkSize);
+        }
+        System.out.println(checked + " parses matched parseProgram()");
+    }
+
+    // statements of valid code with noise tokens inserted at random places
+    static String program(Random random, int statements, int errors) {
+        StringBuilder source = new StringBuilder("int main() {\n int x, y; int[4] a;\n");
+
+        for (int i = 0; i < statements; i++) {
+            if (errors > 0 && random.nextInt(statements) < errors)
+                source.append(NOISE[random.nextInt(NOISE.length)]).append(' ');
+            source.append(STATEMENTS[random.nextInt(STATEMENTS.length)]).append('\n');
+        }
+        return source.append("}\n").toString();
+    }
+
+    private static int check(String source, ForkJoinPool pool, int chunkSize) throws IOException {
+        Parser sequential = new Parser(new Lexer(source).tokenize());
+        String expected = ParseDescription.describe(sequential, sequential.parseProgram());
+        Parser parallel = new Parser(new Lexer(source).tokenize());
+        String actual = ParseDescription.describe(parallel, parallel.parseProgramParallel(pool, chunkSize));
+
+        if (!expected.equals(actual)) {
+            System.out.println("parseProgramParallel() differs with chunk size " + chunkSize + " on:\n" + source);
+            System.out.println("--- parseProgram()\n" + expected + "--- parseProgramParallel()\n" + actual);
+            System.exit(1);
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,224 @@
+package parser;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Random;
+
+import ast.Assign;
+import ast.Exp;
+import ast.Identifier;
+import ast.Type;
+import ast.VarDecl;
+import lexer.Lexer;
+import lexer.TokenType;
+
+/*
+ * Checks the other parse modes against parseProgram() on the programs of
+ * TestParallelParser, valid and broken at random tokens: the events of
+ * parse(ParseListener) against the symbol lists and errors, and the tree
+ * and errors of parseFlatProgram(). On the programs without noise tokens,
+ * whose blocks all parse, it also compares parseLazyProgram() with every
+ * LazyBlock materialized. Last it follows the accounting of a ParseCache
+ * under eviction. Exits with status 1 on the first difference.
+ */
+public class TestParseModes {
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 23);
+        int checked = 0;
+
+        for (int i = 0; i < 500; i++) {
+            String source = TestParallelParser.program(random, 20 + random.nextInt(40),
+                    i % 2 == 0 ? 0 : 1 + random.nextInt(4));
+
+            checked += checkListener(source);
+            checked += checkFlat(source);
+            if (i % 2 == 0)
+                checked += checkLazy(source);
+        }
+        checked += checkCache(random);
+        System.out.println(checked + " results matched parseProgram()");
+    }
+
+    /*
+     * Looks up random programs of a small set in a cache that holds about
+     * a third of them, parsing and storing them on a miss, and follows the
+     * hits, misses, evictions and bytes the cache has to count with an LRU
+     * map of the same sizes.
+     */
+    private static int checkCache(Random random) throws IOException {
+        String[] sources = new String[12];
+        String[] descriptions = new String[sources.length];
+        long[] sizes = new long[sources.length];
+        long total = 0;
+
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = TestParallelParser.program(random, 20 + random.nextInt(40), i % 3);
+            Parser parser = new Parser(new Lexer(sources[i]).tokenize());
+            ParseResult result = new ParseResult(parser.parseProgram(), parser);
+
+            descriptions[i] = describe(result);
+            sizes[i] = result.estimateBytes() + 2L * sources[i].length();
+            total += sizes[i];
+        }
+
+        ParseCache cache = new ParseCache(total / 3);
+        LinkedHashMap<Integer, Long> model = new LinkedHashMap<Integer, Long>(16, 0.75f, true);
+        long hits = 0, misses = 0, evictions = 0, bytes = 0;
+
+        for (int lookup = 0; lookup < 2000; lookup++) {
+            int i = random.nextInt(sources.length);
+            ParseResult result = cache.get(sources[i]);
+
+            if (model.get(i) != null) {
+                hits++;
+                if (result == null)
+                    fail("ParseCache", sources[i], "a hit", "a miss");
+            } else {
+                misses++;
+                if (result != null)
+                    fail("ParseCache", sources[i], "a miss", "a hit");
+
+                Parser parser = new Parser(new Lexer(sources[i]).tokenize());
+                result = new ParseResult(parser.parseProgram(), parser);
+                cache.put(sources[i], result);
+
+                // the least recently used entries go first
+                model.put(i, sizes[i]);
+                bytes += sizes[i];
+                Iterator<Long> eldest = model.values().iterator();
+                while (bytes > total / 3) {
+                    bytes -= eldest.next();
+                    eldest.remove();
+                    evictions++;
+                }
+            }
+
+            if (!descriptions[i].equals(describe(result)))
+                fail("ParseCache", sources[i], descriptions[i], describe(result));
+            String expected = hits + " hits, " + misses + " misses, " + evictions + " evictions, " + model.size()
+                    + " entries, " + bytes + " bytes";
+            String actual = cache.getHits() + " hits, " + cache.getMisses() + " misses, " + cache.getEvictions()
+                    + " evictions, " + cache.size() + " entries, " + cache.getBytes() + " bytes";
+            if (!expected.equals(actual))
+                fail("ParseCache", sources[i], expected, actual);
+        }
+        return 2000;
+    }
+
+    private static String describe(ParseResult result) {
+        return result.getErrors() + " errors, " + result.getNodeCount() + " nodes\n" + result.getErrorMessage()
+                + ParseDescription.print(result.getProgram().getStm());
+    }
+
+    // the events of parse(ParseListener) in the order of the symbol lists of parseProgram()
+    private static int checkListener(String source) throws IOException {
+        Parser parser = new Parser(new Lexer(source).tokenize());
+        parser.parseProgram();
+        StringBuilder expected = new StringBuilder();
+
+        for (VarDecl varDecl : parser.getDecelarations())
+            expected.append(declaration(varDecl.getType(), varDecl.getId()));
+        for (Identifier id : parser.getIdentifiers())
+            expected.append(name(id)).append('\n');
+        for (Assign assign : parser.getAssigns())
+            expected.append(assign(assign.getId(), assign.getValue()));
+        for (Exp condition : parser.getConditions())
+            expected.append(condition(condition));
+        expected.append(parser.getErrors()).append(" errors\n").append(parser.getErrorMessage());
+
+        Parser streaming = new Parser(new Lexer(source).tokenize());
+        Events events = new Events();
+        streaming.parse(events);
+        String actual = events.toString() + streaming.getErrors() + " errors\n" + streaming.getErrorMessage();
+
+        if (events.errors != streaming.getErrors())
+            fail("parse(ParseListener)", source, streaming.getErrors() + " errors", events.errors + " onError() events");
+        if (!expected.toString().equals(actual))
+            fail("parse(ParseListener)", source, expected.toString(), actual);
+        return 1;
+    }
+
+    // nodes that did not parse are null
+    private static String name(Identifier id) {
+        return id == null ? "null" : id.getName() + '#' + id.getNodeId();
+    }
+
+    // printing the statements calls getStms() on every nested LazyBlock
+    private static int checkLazy(String source) throws IOException {
+        Parser parser = new Parser(new Lexer(source).tokenize());
+        String expected = ParseDescription.print(parser.parseProgram().getStm()) + parser.getErrorMessage();
+        Parser lazy = new Parser(new Lexer(source).tokenize());
+        String actual = ParseDescription.print(lazy.parseLazyProgram().getStm()) + lazy.getErrorMessage();
+
+        if (!expected.equals(actual))
+            fail("parseLazyProgram()", source, expected, actual);
+        return 1;
+    }
+
+    private static int checkFlat(String source) throws IOException {
+        Parser parser = new Parser(new Lexer(source).tokenize());
+        String expected = ParseDescription.print(parser.parseProgram().getStm()) + parser.getErrorMessage();
+        Parser flat = new Parser(new Lexer(source).tokenize());
+        String actual = ParseDescription.print(flat.parseFlatProgram().toProgram().getStm()) + flat.getErrorMessage();
+
+        if (!expected.equals(actual))
+            fail("parseFlatProgram()", source, expected, actual);
+        return 1;
+    }
+
+    private static String declaration(Type type, Identifier id) {
+        return (type == null ? "null" : type.getClass().getSimpleName()) + ' ' + name(id) + '\n';
+    }
+
+    private static String assign(Identifier target, Exp value) {
+        return name(target) + " = " + (value == null ? "null" : value.getClass().getSimpleName() + '#' + value.getNodeId()) + '\n';
+    }
+
+    private static String condition(Exp condition) {
+        return condition.getClass().getSimpleName() + '#' + condition.getNodeId() + '\n';
+    }
+
+    // the events of each kind, appended in the order of the symbol lists
+    private static class Events implements ParseListener {
+        private final StringBuilder declarations = new StringBuilder();
+        private final StringBuilder identifiers = new StringBuilder();
+        private final StringBuilder assigns = new StringBuilder();
+        private final StringBuilder conditions = new StringBuilder();
+        private int errors;
+
+        public void onDeclaration(Type type, Identifier id, int spanStart, int spanEnd) {
+            declarations.append(declaration(type, id));
+        }
+
+        public void onIdentifier(Identifier id) {
+            identifiers.append(name(id)).append('\n');
+        }
+
+        public void onAssign(Identifier target, Exp value) {
+            assigns.append(assign(target, value));
+        }
+
+        public void onArrayAssign(Identifier target, Exp index, Exp value) {
+            assigns.append(assign(target, value));
+        }
+
+        public void onCondition(Exp condition) {
+            conditions.append(condition(condition));
+        }
+
+        public void onError(TokenType found, TokenType expected, int line, int column) {
+            errors++;
+        }
+
+        public String toString() {
+            return declarations.toString() + identifiers + assigns + conditions;
+        }
+    }
+
+    private static void fail(String mode, String source, String expected, String actual) {
+        System.out.println(mode + " differs from parseProgram() on:\n" + source);
+        System.out.println("--- parseProgram()\n" + expected + "\n--- " + mode + "\n" + actual);
+        System.exit(1);
+    }
+}
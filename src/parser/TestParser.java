@@ -1,33 +1,73 @@
 package parser;
 
 import java.io.IOException;
-import java.io.StringReader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import ast.Program;
+import lexer.Lexer;
 import visitor.PrintVisitor;
 
 public class TestParser {
+    // parser reused by the requests served on a thread
+    private static final ThreadLocal<Parser> parsers = new ThreadLocal<Parser>();
+
+    public static void main(String[] args) throws IOException {
+        System.out.print(performParsing(Paths.get(args[0])));
+    }
+
+    // a resubmitted file is served from the ParseCache without parsing it again
     public static String performParsing(String fileContent) throws IOException {
-        try (StringReader reader = new StringReader(fileContent)) {
-            Parser parser = new Parser(fileContent);
-            Program program = parser.parseProgram();
+        long startTime = System.currentTimeMillis();
+        ParseCache cache = ParseCache.getShared();
+        ParseResult result = cache.get(fileContent);
 
-            long startTime = System.currentTimeMillis();
-            long endTime;
+        if (result == null) {
+            Parser parser = parsers.get();
 
-            endTime = System.currentTimeMillis();
-            String result = "File has finished parsing!\n" +
-                            "Execution time: " + (endTime - startTime) + "ms\n" +
-                            parser.getErrors() + " errors reported\n" + parser.getErrorMessage() + "\n\n";
+            if (parser == null) {
+                parser = new Parser(fileContent);
+                parsers.set(parser);
+            } else {
+                parser.reset(fileContent);
+            }
+            try {
+                result = new ParseResult(parser.parseProgram(), parser);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return "Error occurred while parsing the file.";
+            }
+            cache.put(fileContent, result);
+        }
+        return performParsing(result, System.currentTimeMillis() - startTime);
+    }
 
-            // print out AST
-            PrintVisitor printer = new PrintVisitor();
-            printer.visit(program);
+    // parse a file through a memory mapping instead of loading it on the heap
+    public static String performParsing(Path file) throws IOException {
+        try {
+            long startTime = System.currentTimeMillis();
+            Parser parser = new Parser(new Lexer(file));
+            ParseResult result = new ParseResult(parser.parseProgram(), parser);
 
-            return result;
+            return performParsing(result, System.currentTimeMillis() - startTime);
         } catch (IOException e) {
             e.printStackTrace();
             return "Error occurred while parsing the file.";
         }
     }
+
+    // time is what the cache lookup and the parse took, in milliseconds
+    private static String performParsing(ParseResult parsed, long time) {
+        Program program = parsed.getProgram();
+
+        String result = "File has finished parsing!\n" +
+                        "Execution time: " + time + "ms\n" +
+                        parsed.getErrors() + " errors reported\n" + parsed.getErrorMessage() + "\n\n";
+
+        // print out AST
+        PrintVisitor printer = new PrintVisitor();
+        printer.visit(program);
+
+        return result;
+    }
 }
@@ -0,0 +1,79 @@
+package parser;
+
+import java.io.IOException;
+import java.util.Random;
+
+import lexer.GrowthTimer;
+
+/*
+ * Parses 1MB and 10MB of statements, most of them broken, once with an error
+ * budget and once without. Exits with status 1 if the budgeted parse keeps
+ * more diagnostics than the budget allows, if the unbudgeted parse stops
+ * before the budget would have, or if the time of either parse grows much
+ * faster than the input.
+ */
+public class TestParserBounds {
+    // statements with syntax errors the parser recovers from without leaving main
+    private static final String[] BROKEN = {
+        "x = 1 + ;", "x = ( 1 ;", "x = ) ;", "x = ;", "x = * ;", "x = 1 * ( ;", "x = ! ;", "x = - ;",
+        "y1 [ 2 ] = + ;", "y1 [ 2 ] = ;", "if ( * ) { x = 1 ; }", "x = 1.5 < ;", "x = ( ( ( ;", "x = x x ;"
+    };
+    private static final String[] VALID = {
+        "x = 1 ;", "y1 [ 2 ] = x + 'c' ;", "if ( x < 2 ) { x = 1 ; } else y1 = 2 ;", "while ( x != 4 ) x = x - 1 ;"
+    };
+    private static final int SMALL = 1 << 20;
+    private static final int LARGE = SMALL * 10;
+    private static final int BUDGET = 100;
+
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 19);
+        String small = input(random, SMALL);
+        String large = input(random, LARGE);
+        boolean failed = false;
+
+        for (int budget : new int[] { BUDGET, Integer.MAX_VALUE }) {
+            int maxErrors = budget;
+            GrowthTimer timer = new GrowthTimer(input -> parse(input, maxErrors), small, large);
+            Parser parser = parse(large, budget);
+
+            System.out.println((budget == BUDGET ? "budget " + BUDGET : "no budget") + ": " + parser.getErrors()
+                    + " errors, " + parser.getDiagnostics().size() + " diagnostics for " + large.length() + " chars in " + timer);
+
+            // one message per error plus the one saying parsing stopped
+            if (budget == BUDGET && (parser.getErrors() > BUDGET || parser.getDiagnostics().size() > BUDGET + 1)) {
+                System.out.println("  FAILED: diagnostics exceed the error budget");
+                failed = true;
+            }
+            if (budget != BUDGET && parser.getErrors() <= BUDGET) {
+                System.out.println("  FAILED: parsing stopped early, the budget is not exercised");
+                failed = true;
+            }
+            if (timer.isSuperlinear()) {
+                System.out.println("  FAILED: time grows faster than the input");
+                failed = true;
+            }
+        }
+
+        if (failed)
+            System.exit(1);
+        System.out.println("All parser bounds hold");
+    }
+
+    private static String input(Random random, int length) {
+        StringBuilder input = new StringBuilder(length + 16).append("int main() {\n");
+
+        while (input.length() < length) {
+            String[] statements = random.nextInt(4) == 0 ? VALID : BROKEN;
+            input.append(statements[random.nextInt(statements.length)]).append('\n');
+        }
+        return input.append("}\n").toString();
+    }
+
+    private static Parser parse(String input, int budget) throws IOException {
+        Parser parser = new Parser(input);
+
+        parser.setMaxErrors(budget);
+        parser.parseProgram();
+        return parser;
+    }
+}
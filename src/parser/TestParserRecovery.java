@@ -0,0 +1,39 @@
+package parser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/*
+ * Pins the syntax errors reported for the files given as arguments, such as
+ * tests/parser03.txt, to the ones listed in the .errors file next to each,
+ * one "ERROR: " line per error. Both parseProgram() and parseFlatProgram()
+ * must report them. Exits with status 1 on the first difference.
+ */
+public class TestParserRecovery {
+    public static void main(String[] args) throws IOException {
+        for (String file : args) {
+            String source = new String(Files.readAllBytes(Paths.get(file)));
+            Path errors = Paths.get(file.replaceFirst("\\.txt$", "") + ".errors");
+            String expected = new String(Files.readAllBytes(errors));
+
+            Parser parser = new Parser(source);
+            parser.parseProgram();
+            check(file, "parseProgram()", expected, parser.getErrorMessage());
+
+            parser.reset(source);
+            parser.parseFlatProgram();
+            check(file, "parseFlatProgram()", expected, parser.getErrorMessage());
+        }
+        System.out.println(args.length + " files reported the expected errors");
+    }
+
+    private static void check(String file, String mode, String expected, String actual) {
+        if (!expected.equals(actual)) {
+            System.out.println(mode + " reported other errors on " + file + ":\n--- expected\n" + expected
+                    + "--- reported\n" + actual);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package parser;
+
+import ast.NodeKind;
+
+/*
+ * Builds the nodes Parser recognizes, so one parser serves both the object
+ * tree of parseProgram() and the FlatAst of parseFlatProgram(). A node is
+ * an int handle, NONE for a construct that did not parse; the NodeKinds
+ * and their children are those of FlatAst.
+ *
+ * Nodes are built in postorder: the children passed to a call are the
+ * nodes built last that were not passed to a call yet, except that the
+ * type of a VAR_DECL stays for the next declaration of the same list.
+ * Spans are token index ranges.
+ */
+interface TreeBuilder {
+	int NONE = -1;
+
+	// a node with up to three children, or none for types
+	int add(NodeKind kind, int first, int second, int third, int start, int end);
+
+	// INT_LITERAL, FLOAT_LITERAL (raw bits), BOOLEAN_LITERAL (1 for true) or CHAR_LITERAL
+	int literal(NodeKind kind, int value, int start);
+
+	// the IDENTIFIER a declaration declares
+	int identifier(String name, int start);
+
+	// an IDENTIFIER assigned to or an IDENTIFIER_EXP, a use of the variable name
+	int use(NodeKind kind, String name, int start);
+
+	// exp is the condition of an if or while statement
+	int condition(int exp, int start, int end);
+
+	// lists: DECLARATIONS, VAR_DECL_LIST, STATEMENT_LIST or BLOCK
+	int beginList(NodeKind kind);
+
+	void addElement(int list, int element);
+
+	int endList(NodeKind kind, int list, int start, int end);
+
+	// drop node and the ones built after it, they will not get a parent
+	void release(int node);
+
+	boolean isIntegerLiteral(int exp);
+}
@@ -2,318 +2,309 @@ package semantic;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.io.StringReader;
-
-import ast.Assign;
-import ast.BooleanArrayType;
-import ast.BooleanLiteral;
-import ast.BooleanType;
-import ast.CharArrayType;
-import ast.CharLiteral;
-import ast.CharType;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
 import ast.Equal;
 import ast.Exp;
-import ast.FloatArrayType;
-import ast.FloatLiteral;
-import ast.FloatType;
 import ast.Identifier;
-import ast.IdentifierExp;
-import ast.IntegerArrayType;
-import ast.IntegerLiteral;
-import ast.IntegerType;
 import ast.LessThan;
 import ast.LessThanEqual;
 import ast.MoreThan;
 import ast.MoreThanEqual;
 import ast.NotEqual;
+import ast.Program;
+import ast.Statement;
+import ast.StatementList;
 import ast.Type;
 import ast.VarDecl;
+import lexer.TokenType;
+import parser.ParseCache;
+import parser.ParseListener;
+import parser.ParseResult;
 import parser.Parser;
 
 import java.util.List;
 public class SemanticAnalyzer {
 
 	private Parser parser;
-	private ArrayList<VarDecl> declerations;
-	private ArrayList<Identifier> identifiers;
-	private ArrayList<Assign> assigns;
-	private ArrayList<Exp> conditions;
+	private List<VarDecl> declerations;
+	private List<Identifier> identifiers;
+	private List<Exp> conditions;
+	private SymbolTable symbols = new SymbolTable(); // declarations by name and scope, built by checkDeclerations()
 
-	private int errors;
 	private List<String> errorMessages = new ArrayList<>();
+	private TypeChecker types = new TypeChecker(symbols, errorMessages);
 
 	public SemanticAnalyzer(String fileContent) throws IOException {
-		try (StringReader reader = new StringReader(fileContent)) {
-			this.parser = new Parser(fileContent);
-		}
+		this.parser = new Parser(fileContent);
+	}
+
+	// analyzer without content, for reset() or analyzeProgram(ParseCache, String)
+	public SemanticAnalyzer() throws IOException {
+		this("");
+	}
+
+	public SemanticAnalyzer(Parser parser) {
+		this.parser = parser;
+	}
+
+	// start over on new content, reusing the parser and its buffers; also unfreezes the symbol table
+	public void reset(String fileContent) throws IOException {
+		parser.reset(fileContent);
+		symbols.clear();
+		errorMessages.clear();
 	}
 
 	// get number of errors
 	public int getErrors() {
-		return errors;
+		return errorMessages.size();
 	}
 
 	// start semantic analyzer
 	public void analyzeProgram() throws IOException {
-		this.parser.parseProgram();
+		Program program = this.parser.parseProgram();
 		this.declerations = this.parser.getDecelarations();
 		checkDeclerations();
 		this.identifiers = this.parser.getIdentifiers();
 		checkIdenifiers();
-		this.assigns = this.parser.getAssigns();
-		checkAssigns();
+		checkAssigns(program);
 		this.conditions = this.parser.getConditions();
 		checkConditions();
 	}
 
-	// check program declarations
-	private void checkDeclerations() {
-		for (int i = 0; i < declerations.size(); i++) {
-			VarDecl varDecl = declerations.get(i);
-			String idName = varDecl.getId().getName();
-
-			for (int j = i + 1; j < declerations.size(); j++) {
-				VarDecl _varDecl = declerations.get(j);
-				String _idName = _varDecl.getId().getName();
-
-				if (idName.equals(_idName))
-				 error(ErrorType.MULTIPLE_DECLARATION, _idName);
-			}
+	/*
+	 * Analyze fileContent with its parse taken from cache, parsing and
+	 * storing it only on a miss. The cached tree is shared and only read.
+	 */
+	public void analyzeProgram(ParseCache cache, String fileContent) throws IOException {
+		ParseResult result = cache.get(fileContent);
+
+		if (result == null) {
+			parser.reset(fileContent);
+			result = new ParseResult(parser.parseProgram(), parser);
+			cache.put(fileContent, result);
 		}
-	}
 
-	// check program identifiers
-	private void checkIdenifiers() {
-		for (Identifier identifier : identifiers) {
-			if (!isIdentifierExists(identifier.getName()))
-			error(ErrorType.NO_DECLARATION, identifier.getName());
-		}
+		errorMessages.clear();
+		this.declerations = result.getDecelarations();
+		checkDeclerations();
+		this.identifiers = result.getIdentifiers();
+		checkIdenifiers();
+		checkAssigns(result.getProgram());
+		this.conditions = result.getConditions();
+		checkConditions();
 	}
 
-	// check program conditions
-	private void checkConditions() {
-		for (Exp exp : conditions) {
-			if ((exp instanceof MoreThan || exp instanceof MoreThanEqual || exp instanceof LessThan ||
-					exp instanceof LessThanEqual || exp instanceof NotEqual || exp instanceof Equal))
-					error(ErrorType.INVALID_CONDITION, null);
-		}
+	/*
+	 * Parallel mode: parse, check the declarations and build the symbol
+	 * table, then freeze it and check the identifiers, the assignments and
+	 * the conditions concurrently on pool. Each rule family is split into
+	 * chunks of chunkSize identifiers, top level statements or conditions,
+	 * and every chunk collects its own messages. They are merged in the
+	 * order analyzeProgram() reports them, so the output is the same.
+	 */
+	public void analyzeProgramParallel(ForkJoinPool pool, int chunkSize) throws IOException {
+		Program program = this.parser.parseProgram();
+		this.declerations = this.parser.getDecelarations();
+		checkDeclerations();
+		this.identifiers = this.parser.getIdentifiers();
+		this.conditions = this.parser.getConditions();
+		symbols.freeze();
+
+		chunkSize = Math.max(chunkSize, 1);
+		List<CheckTask> tasks = new ArrayList<CheckTask>();
+		StatementList statements = program.getStm();
+
+		for (int i = 0; i < identifiers.size(); i += chunkSize)
+			tasks.add(new CheckTask(IDENTIFIERS, i, Math.min(i + chunkSize, identifiers.size()), statements));
+		for (int i = 0; statements != null && i < statements.size(); i += chunkSize)
+			tasks.add(new CheckTask(ASSIGNS, i, Math.min(i + chunkSize, statements.size()), statements));
+		for (int i = 0; i < conditions.size(); i += chunkSize)
+			tasks.add(new CheckTask(CONDITIONS, i, Math.min(i + chunkSize, conditions.size()), statements));
+
+		pool.invoke(new RecursiveAction() {
+			protected void compute() {
+				ForkJoinTask.invokeAll(tasks);
+			}
+		});
 
+		for (CheckTask task : tasks)
+			errorMessages.addAll(task.messages);
 	}
 
-	// check if a specific identifier name is exists
-	private boolean isIdentifierExists(String name) {
-		for (VarDecl varDecl : declerations) {
-			String idName = varDecl.getId().getName();
-
-			if (idName.equals(name))
-				return true;
-		}
-		return false;
+	public void analyzeProgramParallel() throws IOException {
+		analyzeProgramParallel(ForkJoinPool.commonPool(), 1 << 12);
 	}
 
-	// type checking of all the assign expressions
-	private void checkAssigns() {
-		for (Assign assign : assigns) {
-			Exp type = assign.getValue();
-			String idName = assign.getId().getName();
-			Type idType = getIdentifierType(idName);
-
-			// assign to int
-			if (idType != null && (idType instanceof IntegerType || idType instanceof IntegerArrayType)) {
-
-				// float to int
-				if (type instanceof FloatLiteral)
-				error(ErrorType.FLOAT_INT_CASTING, idName);
-
-				// boolean to int
-				if (type instanceof BooleanLiteral)
-				error(ErrorType.BOOLEAN_INT_CASTING, idName);
-
-				// type(id) to int
-				if (type instanceof IdentifierExp) {
-					String _idName = ((IdentifierExp) type).getName();
-					Type _idType = getIdentifierType(_idName);
-
-					if (_idType != null) {
-						// float to int
-						if (_idType instanceof FloatType)
-						error(ErrorType.FLOAT_INT_CASTING, idName);
-
-						// boolean to int
-						else if (_idType instanceof BooleanType)
-						error(ErrorType.BOOLEAN_INT_CASTING, idName);
-
-						if (idType instanceof IntegerType)
-							// identifier with array type
-							if (_idType instanceof FloatArrayType || _idType instanceof BooleanArrayType
-									|| _idType instanceof IntegerArrayType || _idType instanceof CharArrayType)
-									error(ErrorType.ARRAY_TO_SINGLE, idName);
-
-						if (idType instanceof IntegerArrayType)
-							// identifier with single type
-							if (_idType instanceof FloatType || _idType instanceof BooleanType
-									|| _idType instanceof IntegerType || _idType instanceof CharType)
-								error(ErrorType.SINGLE_TO_ARRAY, idName);
-
-					}
-
-				}
-			}
-
-			// assign to float
-			if (idType != null && (idType instanceof FloatType || idType instanceof FloatArrayType)) {
-
-				// boolean to float
-				if (type instanceof BooleanLiteral)
-				error(ErrorType.BOOLEAN_FLOAT_CASTING, idName);
+	private static final int IDENTIFIERS = 0, ASSIGNS = 1, CONDITIONS = 2;
 
-				// char to float
-				if (type instanceof CharLiteral)
-				error(ErrorType.CHAR_FLOAT_CASTING, idName);
+	// checks one chunk of a rule family for analyzeProgramParallel()
+	private class CheckTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
 
-				if (type instanceof IdentifierExp) {
+		private final int family;
+		private final int from;
+		private final int to;
+		private final StatementList statements;
+		private final List<String> messages = new ArrayList<String>();
 
-					String _idName = ((IdentifierExp) type).getName();
-					Type _idType = getIdentifierType(_idName);
-
-					if (_idType != null) {
-						// boolean to float
-						if (_idType instanceof BooleanType)
-						error(ErrorType.BOOLEAN_FLOAT_CASTING, idName);
+		CheckTask(int family, int from, int to, StatementList statements) {
+			this.family = family;
+			this.from = from;
+			this.to = to;
+			this.statements = statements;
+		}
 
-						// char to float
-						else if (_idType instanceof CharType)
-						error(ErrorType.CHAR_FLOAT_CASTING, idName);
+		protected void compute() {
+			switch (family) {
+			case IDENTIFIERS:
+				for (int i = from; i < to; i++)
+					checkIdentifier(identifiers.get(i), messages);
+				break;
+			case ASSIGNS:
+				TypeChecker checker = new TypeChecker(symbols, messages);
 
-						if (idType instanceof FloatType)
-							// identifier with array type
-							if (_idType instanceof FloatArrayType || _idType instanceof BooleanArrayType
-									|| _idType instanceof IntegerArrayType || _idType instanceof CharArrayType)
-									error(ErrorType.ARRAY_TO_SINGLE, idName);
+				for (int i = from; i < to; i++) {
+					Statement stm = statements.elementAt(i);
 
-						if (idType instanceof FloatArrayType)
-							// identifier with single type
-							if (_idType instanceof FloatType || _idType instanceof BooleanType
-									|| _idType instanceof IntegerType || _idType instanceof CharType)
-									error(ErrorType.SINGLE_TO_ARRAY, idName);
-					}
+					if (stm != null)
+						stm.accept(checker);
 				}
+				break;
+			case CONDITIONS:
+				for (int i = from; i < to; i++)
+					checkCondition(conditions.get(i), messages);
+				break;
 			}
+		}
+	}
 
-			// assign to char
-			if (idType != null && (idType instanceof CharType || idType instanceof CharArrayType)) {
-
-				// int to char
-				if (type instanceof IntegerLiteral)
-				error(ErrorType.INT_CHAR_CASTING, idName);
-
-				// float to char
-				if (type instanceof FloatLiteral)
-				error(ErrorType.FLOAT_CHAR_CASTING, idName);
-
-				// boolean to char
-				if (type instanceof BooleanLiteral)
-				error(ErrorType.BOOLEAN_CHAR_CASTING, idName);
-
-				// type(id) to int
-				if (type instanceof IdentifierExp) {
-					String _idName = ((IdentifierExp) type).getName();
-					Type _idType = getIdentifierType(_idName);
-
-					if (_idType != null) {
-
-						// float to char
-						if (_idType instanceof FloatType)
-						error(ErrorType.FLOAT_CHAR_CASTING, idName);
-
-						// int to char
-						else if (_idType instanceof IntegerType)
-						error(ErrorType.INT_CHAR_CASTING, idName);
+	/*
+	 * Fused mode: run the checks while the parser recognizes each construct,
+	 * see Parser.parse(ParseListener). No tree or symbol lists are kept and
+	 * the input is walked once. The grammar puts every declaration before
+	 * the first statement, so the symbol table is complete by the time a use
+	 * is checked. The messages are those of analyzeProgram(), in source
+	 * order instead of grouped by check; a redeclaration is reported once
+	 * per earlier declaration of its name. The parser keeps the syntax
+	 * errors for getErrorMessage() as it does for analyzeProgram().
+	 */
+	public void analyzeProgramFused() throws IOException {
+		symbols.clear();
+		symbols.enterScope();
+		parser.parse(new FusedChecks());
+	}
 
-						// boolean to char
-						else if (_idType instanceof BooleanType)
-						error(ErrorType.BOOLEAN_CHAR_CASTING, idName);
+	private class FusedChecks implements ParseListener {
+		@Override
+		public void onDeclaration(Type type, Identifier id, int spanStart, int spanEnd) {
+			if (id == null)
+				return;
 
-						if (idType instanceof CharType)
-							// identifier with array type
-							if (_idType instanceof FloatArrayType || _idType instanceof BooleanArrayType
-									|| _idType instanceof IntegerArrayType || _idType instanceof CharArrayType)
-									error(ErrorType.ARRAY_TO_SINGLE, idName);
+			int entry = symbols.add(id.getName(), type);
+			for (int earlier = symbols.getCount(entry) - 1; earlier > 0; earlier--)
+				error(ErrorType.MULTIPLE_DECLARATION, id.getName());
+		}
 
-						if (idType instanceof CharArrayType)
-							// identifier with single type
-							if (_idType instanceof FloatType || _idType instanceof BooleanType
-									|| _idType instanceof IntegerType || _idType instanceof CharType)
-									error(ErrorType.SINGLE_TO_ARRAY, idName);
-					}
+		@Override
+		public void onIdentifier(Identifier id) {
+			checkIdentifier(id, errorMessages);
+		}
 
-				}
-			}
+		@Override
+		public void onAssign(Identifier target, Exp value) {
+			types.checkAssign(target, value, false);
+		}
 
-			// assign to boolean
-			if (idType != null && (idType instanceof BooleanType || idType instanceof BooleanArrayType)) {
-				// int to boolean
-				if (type instanceof IntegerLiteral)
-				error(ErrorType.INT_BOOLEAN_CASTING, idName);
+		@Override
+		public void onArrayAssign(Identifier target, Exp index, Exp value) {
+			types.checkAssign(target, value, true);
+		}
 
-				// float to boolean
-				if (type instanceof FloatLiteral)
-				error(ErrorType.FLOAT_BOOLEAN_CASTING, idName);
+		@Override
+		public void onCondition(Exp condition) {
+			checkCondition(condition, errorMessages);
+		}
 
-				// char to boolean
-				if (type instanceof CharLiteral)
-				error(ErrorType.CHAR_BOOLEAN_CASTING, idName);
+		// the parser keeps the syntax errors, see Parser.getErrorMessage()
+		@Override
+		public void onError(TokenType found, TokenType expected, int line, int column) {
+		}
+	}
 
-				// type(id) to int
-				if (type instanceof IdentifierExp) {
-					String _idName = ((IdentifierExp) type).getName();
-					Type _idType = getIdentifierType(_idName);
+	/*
+	 * Check program declarations and build the symbol table in one pass.
+	 * Every later declaration of a name is reported once per earlier one,
+	 * in the order the pairwise comparison of the declarations used to find
+	 * them: declaration i reports the declarations of its name after it.
+	 *
+	 * The declarations all belong to the scope of main. Blocks only hold
+	 * statements, so they would open empty scopes and are not entered.
+	 */
+	private void checkDeclerations() {
+		symbols.clear();
+		symbols.enterScope();
+		int[] ids = new int[declerations.size()];
 
-					if (_idType != null) {
+		for (int i = 0; i < declerations.size(); i++) {
+			VarDecl varDecl = declerations.get(i);
 
-						// float to boolean
-						if (_idType instanceof FloatType)
-						error(ErrorType.FLOAT_CHAR_CASTING, idName);
+			// a declaration whose name did not parse declares nothing, as in analyzeProgramFused()
+			ids[i] = varDecl.getId() == null ? -1 : symbols.add(varDecl.getId().getName(), varDecl.getType());
+		}
 
-						// int to boolean
-						else if (_idType instanceof IntegerType)
-						error(ErrorType.INT_CHAR_CASTING, idName);
+		int[] seen = new int[symbols.size()];
+		for (int i = 0; i < ids.length; i++) {
+			int id = ids[i];
 
-						// char to boolean
-						else if (_idType instanceof CharType)
-						error(ErrorType.CHAR_BOOLEAN_CASTING, idName);
+			if (id < 0)
+				continue;
+			for (int later = symbols.getCount(id) - ++seen[id]; later > 0; later--)
+				error(ErrorType.MULTIPLE_DECLARATION, symbols.getName(id));
+		}
+	}
 
-						if (idType instanceof BooleanType)
-							// identifier with array type
-							if (_idType instanceof FloatArrayType || _idType instanceof BooleanArrayType
-									|| _idType instanceof IntegerArrayType || _idType instanceof CharArrayType)
-									error(ErrorType.ARRAY_TO_SINGLE, idName);
+	// check program identifiers
+	private void checkIdenifiers() {
+		for (Identifier identifier : identifiers)
+			checkIdentifier(identifier, errorMessages);
+	}
 
-						if (_idType instanceof BooleanArrayType)
-							// identifier with single type
-							if (_idType instanceof FloatType || _idType instanceof BooleanType
-									|| _idType instanceof IntegerType || _idType instanceof CharType)
-									error(ErrorType.SINGLE_TO_ARRAY, idName);
-					}
+	private void checkIdentifier(Identifier identifier, List<String> messages) {
+		if (!isIdentifierExists(identifier.getName()))
+			error(ErrorType.NO_DECLARATION, identifier.getName(), messages);
+	}
 
-				}
-			}
+	// type checking of all the assignments, in one walk of the tree
+	private void checkAssigns(Program program) {
+		types.check(program);
+	}
 
-		}
+	// check program conditions
+	private void checkConditions() {
+		for (Exp exp : conditions)
+			checkCondition(exp, errorMessages);
 	}
 
-	private Type getIdentifierType(String name) {
-		for (VarDecl dec : declerations) {
-			Identifier id = dec.getId();
-			if (id.getName().equals(name))
-				return dec.getType();
-		}
+	private static void checkCondition(Exp exp, List<String> messages) {
+		if ((exp instanceof MoreThan || exp instanceof MoreThanEqual || exp instanceof LessThan ||
+				exp instanceof LessThanEqual || exp instanceof NotEqual || exp instanceof Equal))
+				error(ErrorType.INVALID_CONDITION, null, messages);
+	}
 
-		return null;
+	// check if a specific identifier name is exists
+	private boolean isIdentifierExists(String name) {
+		return symbols.contains(name);
 	}
 
 	private String error(ErrorType errorType, Object parm) {
-		errors++;
+		return error(errorType, parm, errorMessages);
+	}
+
+	// add the message of an error to messages
+	static String error(ErrorType errorType, Object parm, List<String> messages) {
 		String errorMsg = "";
 		switch (errorType) {
 			case MULTIPLE_DECLARATION:
@@ -364,7 +355,7 @@ public class SemanticAnalyzer {
 			default:
 				break;
 		}
-		errorMessages.add(errorMsg);
+		messages.add(errorMsg);
 		return errorMsg;
 	}
 
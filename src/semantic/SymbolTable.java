@@ -0,0 +1,235 @@
+package semantic;
+
+import java.util.Arrays;
+
+import ast.Type;
+
+/*
+ * Declared variables by name, in nested scopes. Every distinct name is
+ * interned to a name id by an open addressing table with linear probing.
+ * A declaration is an entry with a dense id holding the type of its first
+ * declaration and how many times the name was declared in its scope.
+ *
+ * Each name id points at its innermost entry and each entry at the entry it
+ * shadows. Leaving a scope walks the entries added since it was entered
+ * back to their shadowed ones, so entering and leaving a scope costs its
+ * own declarations and the enclosing scopes are never copied. Entry ids of
+ * a scope are reused once it is left.
+ *
+ * A frozen table rejects changes until it is cleared, and can then be read
+ * by any number of threads.
+ */
+public class SymbolTable {
+	private int[] slots; // name id + 1 by probe slot, 0 = empty
+	private int[] hashes; // hash by name id
+	private String[] names; // name by name id
+	private int[] current; // innermost entry by name id, -1 if out of scope
+	private int nameCount;
+
+	private int[] entryNames; // name id by entry
+	private Type[] types; // type of the first declaration by entry
+	private int[] counts; // declarations in its scope by entry
+	private int[] shadowed; // entry of the same name in an enclosing scope, -1 if none
+	private int[] depths; // scope depth by entry
+	private int size;
+
+	private int[] marks = new int[8]; // first entry of each open scope
+	private int depth; // 0 = outermost scope, never left
+	private boolean frozen;
+
+	public SymbolTable() {
+		this(16);
+	}
+
+	public SymbolTable(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) * 2;
+
+		slots = new int[capacity];
+		hashes = new int[capacity / 2];
+		names = new String[capacity / 2];
+		current = new int[capacity / 2];
+
+		entryNames = new int[capacity / 2];
+		types = new Type[capacity / 2];
+		counts = new int[capacity / 2];
+		shadowed = new int[capacity / 2];
+		depths = new int[capacity / 2];
+	}
+
+	// forget all names and scopes, keeping the capacity
+	public void clear() {
+		Arrays.fill(slots, 0);
+		Arrays.fill(names, 0, nameCount, null);
+		Arrays.fill(types, 0, size, null);
+		nameCount = 0;
+		size = 0;
+		depth = 0;
+		frozen = false;
+	}
+
+	// make the table read-only until the next clear()
+	public void freeze() {
+		frozen = true;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	private void checkWritable() {
+		if (frozen)
+			throw new IllegalStateException("symbol table is frozen");
+	}
+
+	// open a scope nested in the current one
+	public void enterScope() {
+		checkWritable();
+		if (depth + 1 == marks.length)
+			marks = Arrays.copyOf(marks, marks.length * 2);
+		marks[++depth] = size;
+	}
+
+	// close the current scope, the names it declared resolve to the enclosing ones again
+	public void exitScope() {
+		checkWritable();
+		if (depth == 0)
+			throw new IllegalStateException("no scope to exit");
+
+		int mark = marks[depth--];
+		for (int entry = size - 1; entry >= mark; entry--) {
+			current[entryNames[entry]] = shadowed[entry];
+			types[entry] = null;
+		}
+		size = mark;
+	}
+
+	// nesting depth of the current scope, 0 for the outermost one
+	public int getDepth() {
+		return depth;
+	}
+
+	/*
+	 * Declare name in the current scope and return its entry. A name
+	 * declared again in the same scope keeps its entry and first type and
+	 * counts the redeclaration; in a nested scope it shadows the outer one.
+	 */
+	public int add(String name, Type type) {
+		checkWritable();
+		int nameId = intern(name);
+		int entry = current[nameId];
+
+		if (entry >= 0 && depths[entry] == depth) {
+			counts[entry]++;
+			return entry;
+		}
+
+		if (size == types.length) {
+			int capacity = size * 2;
+
+			entryNames = Arrays.copyOf(entryNames, capacity);
+			types = Arrays.copyOf(types, capacity);
+			counts = Arrays.copyOf(counts, capacity);
+			shadowed = Arrays.copyOf(shadowed, capacity);
+			depths = Arrays.copyOf(depths, capacity);
+		}
+
+		int id = size++;
+		entryNames[id] = nameId;
+		types[id] = type;
+		counts[id] = 1;
+		shadowed[id] = entry;
+		depths[id] = depth;
+		current[nameId] = id;
+		return id;
+	}
+
+	// innermost entry of name, -1 if it is not declared in an open scope
+	public int find(String name) {
+		int hash = mix(name.hashCode());
+		int mask = slots.length - 1;
+
+		for (int slot = hash & mask, nameId; (nameId = slots[slot] - 1) >= 0; slot = (slot + 1) & mask) {
+			if (hashes[nameId] == hash && names[nameId].equals(name))
+				return current[nameId];
+		}
+		return -1;
+	}
+
+	public boolean contains(String name) {
+		return find(name) >= 0;
+	}
+
+	// type of the innermost declaration of name, null if it is not declared
+	public Type getType(String name) {
+		int entry = find(name);
+
+		return entry < 0 ? null : types[entry];
+	}
+
+	public Type getType(int entry) {
+		return types[entry];
+	}
+
+	public String getName(int entry) {
+		return names[entryNames[entry]];
+	}
+
+	// how many times the name of this entry was declared in its scope
+	public int getCount(int entry) {
+		return counts[entry];
+	}
+
+	// number of entries in the open scopes
+	public int size() {
+		return size;
+	}
+
+	// name id of name, added out of scope if it is new
+	private int intern(String name) {
+		int hash = mix(name.hashCode());
+		int mask = slots.length - 1;
+		int slot = hash & mask;
+
+		for (int nameId; (nameId = slots[slot] - 1) >= 0; slot = (slot + 1) & mask) {
+			if (hashes[nameId] == hash && names[nameId].equals(name))
+				return nameId;
+		}
+
+		if (nameCount == names.length) {
+			grow();
+			return intern(name);
+		}
+
+		int nameId = nameCount++;
+		slots[slot] = nameId + 1;
+		hashes[nameId] = hash;
+		names[nameId] = name;
+		current[nameId] = -1;
+		return nameId;
+	}
+
+	// double the name table, the name ids keep their order
+	private void grow() {
+		int capacity = slots.length * 2;
+		int mask = capacity - 1;
+
+		slots = new int[capacity];
+		hashes = Arrays.copyOf(hashes, capacity / 2);
+		names = Arrays.copyOf(names, capacity / 2);
+		current = Arrays.copyOf(current, capacity / 2);
+
+		for (int nameId = 0; nameId < nameCount; nameId++) {
+			int slot = hashes[nameId] & mask;
+
+			while (slots[slot] != 0)
+				slot = (slot + 1) & mask;
+			slots[slot] = nameId + 1;
+		}
+	}
+
+	// spread the bits of String.hashCode(), names often differ only at the end
+	private static int mix(int hash) {
+		hash *= 0x9e3779b9;
+		return hash ^ (hash >>> 16);
+	}
+}
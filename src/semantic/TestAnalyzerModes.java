@@ -0,0 +1,146 @@
+package semantic;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import parser.Parser;
+
+/*
+ * Checks analyzeProgramFused() and analyzeProgramParallel() against
+ * analyzeProgram() on generated programs full of redeclarations,
+ * undeclared names, casts and conditions, some of them broken at random
+ * tokens. The fused messages come in source order, so they are compared
+ * sorted; the parallel ones and the syntax errors have to match as they
+ * are. Exits with status 1 on the first difference.
+ */
+public class TestAnalyzerModes {
+    private static final String[] TYPES = { "int", "float", "char", "boolean", "int[4]", "float[4]", "char[4]" };
+    private static final String[] NAMES = { "a", "b", "c", "d", "e", "f" };
+    private static final String[] VALUES = { "1", "2.5", "'c'", "true", "false", "#", "# + 1", "# * #", "#[2]" };
+    private static final String[] CONDITIONS = { "#", "# < #", "# != 4", "true", "!#", "# && #" };
+    private static final String[] NOISE = { "(", ")", "{", "}", ";", "=", "+", "else", "int", "1.5", "'c'" };
+
+    public static void main(String[] args) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 29);
+        int checked = 0;
+
+        for (int i = 0; i < 500; i++) {
+            String source = program(random, 20 + random.nextInt(40), i % 3 == 0 ? 1 + random.nextInt(4) : 0);
+
+            checked += checkFused(source);
+            for (int chunkSize : new int[] { 1, 8, 64 })
+                checked += checkParallel(source, pool, chunkSize);
+        }
+        System.out.println(checked + " analyses matched analyzeProgram()");
+    }
+
+    // declarations and statements over a few names, the last two never declared
+    private static String program(Random random, int statements, int errors) {
+        StringBuilder source = new StringBuilder("int main() {\n");
+
+        for (int i = random.nextInt(8); i >= 0; i--)
+            source.append(TYPES[random.nextInt(TYPES.length)]).append(' ').append(name(random, 2)).append(";\n");
+        for (int i = 0; i < statements; i++) {
+            if (errors > 0 && random.nextInt(statements) < errors)
+                source.append(NOISE[random.nextInt(NOISE.length)]).append(' ');
+            statement(random, source, 2);
+            source.append('\n');
+        }
+        return source.append("}\n").toString();
+    }
+
+    private static void statement(Random random, StringBuilder source, int depth) {
+        int kind = random.nextInt(depth > 0 ? 4 : 2);
+
+        if (kind == 0)
+            source.append(name(random, 0)).append(" = ").append(fill(random, VALUES)).append(';');
+        else if (kind == 1)
+            source.append(name(random, 0)).append("[2] = ").append(fill(random, VALUES)).append(';');
+        else {
+            source.append(kind == 2 ? "if (" : "while (").append(fill(random, CONDITIONS)).append(") { ");
+            for (int i = random.nextInt(3); i >= 0; i--) {
+                statement(random, source, depth - 1);
+                source.append(' ');
+            }
+            source.append('}');
+            if (kind == 2 && random.nextBoolean()) {
+                source.append(" else ");
+                statement(random, source, 0);
+            }
+        }
+    }
+
+    // a name, leaving out the last skip ones
+    private static String name(Random random, int skip) {
+        return NAMES[random.nextInt(NAMES.length - skip)];
+    }
+
+    private static String fill(Random random, String[] shapes) {
+        String shape = shapes[random.nextInt(shapes.length)];
+        StringBuilder filled = new StringBuilder();
+
+        for (int i = 0; i < shape.length(); i++) {
+            if (shape.charAt(i) == '#')
+                filled.append(name(random, 0));
+            else
+                filled.append(shape.charAt(i));
+        }
+        return filled.toString();
+    }
+
+    private static int checkFused(String source) throws IOException {
+        Parser parser = new Parser(source);
+        SemanticAnalyzer semantic = new SemanticAnalyzer(parser);
+        semantic.analyzeProgram();
+        String expected = describe(parser, semantic, true);
+
+        Parser fusedParser = new Parser(source);
+        SemanticAnalyzer fused = new SemanticAnalyzer(fusedParser);
+        fused.analyzeProgramFused();
+        String actual = describe(fusedParser, fused, true);
+
+        if (!expected.equals(actual))
+            fail("analyzeProgramFused()", source, expected, actual);
+        return 1;
+    }
+
+    private static int checkParallel(String source, ForkJoinPool pool, int chunkSize) throws IOException {
+        Parser parser = new Parser(source);
+        SemanticAnalyzer semantic = new SemanticAnalyzer(parser);
+        semantic.analyzeProgram();
+        String expected = describe(parser, semantic, false);
+
+        Parser parallelParser = new Parser(source);
+        SemanticAnalyzer parallel = new SemanticAnalyzer(parallelParser);
+        parallel.analyzeProgramParallel(pool, chunkSize);
+        String actual = describe(parallelParser, parallel, false);
+
+        if (!expected.equals(actual))
+            fail("analyzeProgramParallel() with chunk size " + chunkSize, source, expected, actual);
+        return 1;
+    }
+
+    // the syntax errors and the messages of the analyzer
+    private static String describe(Parser parser, SemanticAnalyzer semantic, boolean sorted) {
+        List<String> messages = new ArrayList<String>(semantic.getAllErrorMessages());
+        StringBuilder result = new StringBuilder(parser.getErrorMessage());
+
+        if (sorted)
+            Collections.sort(messages);
+        result.append(messages.size()).append(" messages\n");
+        for (String message : messages)
+            result.append(message);
+        return result.toString();
+    }
+
+    private static void fail(String mode, String source, String expected, String actual) {
+        System.out.println(mode + " differs from analyzeProgram() on:\n" + source);
+        System.out.println("--- analyzeProgram()\n" + expected + "--- " + mode + "\n" + actual);
+        System.exit(1);
+    }
+}
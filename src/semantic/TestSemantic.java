@@ -1,34 +1,61 @@
 package semantic;
 
 import java.io.IOException;
-import java.io.StringReader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 
+import lexer.Lexer;
+import parser.ParseCache;
+import parser.Parser;
+
 public class TestSemantic {
+    // analyzer reused by the requests served on a thread
+    private static final ThreadLocal<SemanticAnalyzer> analyzers = new ThreadLocal<SemanticAnalyzer>();
+
+    public static void main(String[] args) throws IOException {
+        System.out.print(performAnalysis(Paths.get(args[0])));
+    }
+
+    // a resubmitted file is analyzed from the ParseCache without parsing it again
     public static String performAnalysis(String fileContent) throws IOException {
-        try (StringReader reader = new StringReader(fileContent)) {
-            SemanticAnalyzer semantic = new SemanticAnalyzer(fileContent);
-            semantic.analyzeProgram();
-
-            long startTime = System.currentTimeMillis();
-            long endTime;
-
-            endTime = System.currentTimeMillis();
-            String result = "File has finished analyzing!\n" +
-                    "Execution time: " + (endTime - startTime) + "ms\n";
-
-            // Concatenate all error messages
-            List<String> errorMessages = semantic.getAllErrorMessages();
-            if (!errorMessages.isEmpty()) {
-                result += errorMessages.size() + " errors reported\n";
-                for (String errorMsg : errorMessages) {
-                    result += errorMsg;
-                }
-            } else {
-                result += "No errors found.";
-            }
+        long startTime = System.currentTimeMillis();
+        SemanticAnalyzer semantic = analyzers.get();
+
+        // created empty, a cache miss lexes the content once in analyzeProgram()
+        if (semantic == null) {
+            semantic = new SemanticAnalyzer();
+            analyzers.set(semantic);
+        }
+        semantic.analyzeProgram(ParseCache.getShared(), fileContent);
+        return report(semantic, System.currentTimeMillis() - startTime);
+    }
+
+    // analyze a file through a memory mapping instead of loading it on the heap
+    public static String performAnalysis(Path file) throws IOException {
+        long startTime = System.currentTimeMillis();
+        SemanticAnalyzer semantic = new SemanticAnalyzer(new Parser(new Lexer(file)));
+
+        semantic.analyzeProgram();
+        return report(semantic, System.currentTimeMillis() - startTime);
+    }
 
-            return result;
+    // time is what the parse and the analysis took, in milliseconds
+    private static String report(SemanticAnalyzer semantic, long time) {
+        String result = "File has finished analyzing!\n" +
+                "Execution time: " + time + "ms\n";
+
+        // Concatenate all error messages
+        List<String> errorMessages = semantic.getAllErrorMessages();
+        if (!errorMessages.isEmpty()) {
+            result += errorMessages.size() + " errors reported\n";
+            for (String errorMsg : errorMessages) {
+                result += errorMsg;
+            }
+        } else {
+            result += "No errors found.";
         }
+
+        return result;
     }
 }
@@ -0,0 +1,135 @@
+package semantic;
+
+import ast.BooleanType;
+import ast.CharType;
+import ast.FloatType;
+import ast.IntegerType;
+import ast.Type;
+
+/*
+ * Checks the scopes of SymbolTable: nested scopes, shadowing, declaration
+ * counts per scope as analyzeProgram() turns them into MULTIPLE_DECLARATION,
+ * and the outer bindings coming back after exitScope(). Exits with status
+ * 1 if any check fails.
+ */
+public class TestSymbolTable {
+    private static final Type INT = new IntegerType();
+    private static final Type FLOAT = new FloatType();
+    private static final Type CHAR = new CharType();
+    private static final Type BOOLEAN = new BooleanType();
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        SymbolTable symbols = new SymbolTable();
+
+        symbols.enterScope();
+        int x = symbols.add("x", INT);
+        symbols.add("y", FLOAT);
+        check(symbols.getDepth() == 1, "depth 1 after enterScope()");
+        check(symbols.getType("x") == INT && symbols.getType("y") == FLOAT, "outer x and y resolve");
+        check(symbols.find("z") < 0 && symbols.getType("z") == null, "undeclared z is not found");
+
+        // a nested scope shadows x and sees y
+        symbols.enterScope();
+        int innerX = symbols.add("x", CHAR);
+        check(innerX != x, "shadowing x gets a new entry");
+        check(symbols.getType("x") == CHAR, "inner x shadows outer x");
+        check(symbols.getType("y") == FLOAT, "outer y is visible in the nested scope");
+
+        // redeclarations count per scope, the shadowed entry keeps its count
+        check(symbols.add("x", BOOLEAN) == innerX, "redeclared x keeps its entry");
+        check(symbols.getType("x") == CHAR, "redeclared x keeps its first type");
+        check(symbols.getCount(innerX) == 2, "inner x is declared twice in its scope");
+        check(symbols.getCount(x) == 1, "outer x is declared once in its scope");
+        int z = symbols.add("z", INT);
+
+        // a third scope: z is declared once here, so it is no multiple declaration
+        symbols.enterScope();
+        int innerZ = symbols.add("z", FLOAT);
+        check(innerZ != z && symbols.getCount(innerZ) == 1, "z in the third scope is a new declaration");
+        check(symbols.getCount(z) == 1, "z in the second scope is still declared once");
+        check(symbols.getType("z") == FLOAT, "innermost z resolves");
+
+        // leaving scopes restores the bindings they shadowed
+        symbols.exitScope();
+        check(symbols.getDepth() == 2, "depth 2 after exitScope()");
+        check(symbols.find("z") == z && symbols.getType("z") == INT, "z of the second scope is back");
+        check(symbols.getType("x") == CHAR && symbols.getCount(innerX) == 2, "inner x is unchanged");
+
+        symbols.exitScope();
+        check(symbols.find("x") == x && symbols.getType("x") == INT, "outer x is back after exitScope()");
+        check(symbols.getCount(x) == 1, "outer x still counts one declaration");
+        check(symbols.find("z") < 0, "z is out of scope");
+        check(symbols.size() == 2, "only the outer entries are left");
+
+        // entries of a left scope are reused, the outer scope counts its own redeclaration
+        symbols.enterScope();
+        check(symbols.add("x", FLOAT) == innerX, "the entry of the left scope is reused");
+        check(symbols.getCount(innerX) == 1, "a reused entry starts with one declaration");
+        symbols.exitScope();
+        check(symbols.add("x", FLOAT) == x && symbols.getCount(x) == 2, "outer x declared again counts two");
+        check(symbols.getType("x") == INT, "outer x keeps its first type");
+
+        manyNames(symbols);
+        frozen(symbols);
+
+        try {
+            symbols.clear();
+            symbols.exitScope();
+            check(false, "exitScope() at depth 0 throws");
+        } catch (IllegalStateException e) {
+            check(symbols.getDepth() == 0, "exitScope() at depth 0 throws");
+        }
+
+        if (failures > 0) {
+            System.out.println(failures + " symbol table checks failed");
+            System.exit(1);
+        }
+        System.out.println("All symbol table checks passed");
+    }
+
+    // enough names to grow the tables, half of them shadowing outer ones
+    private static void manyNames(SymbolTable symbols) {
+        symbols.clear();
+        symbols.enterScope();
+        for (int i = 0; i < 500; i++)
+            symbols.add("v" + i, INT);
+
+        symbols.enterScope();
+        for (int i = 250; i < 750; i++)
+            symbols.add("v" + i, FLOAT);
+        check(symbols.getType("v0") == INT && symbols.getType("v300") == FLOAT && symbols.getType("v700") == FLOAT,
+                "shadowing holds after the tables grew");
+
+        symbols.exitScope();
+        boolean restored = true;
+        for (int i = 0; i < 750; i++)
+            restored &= symbols.getType("v" + i) == (i < 500 ? INT : null);
+        check(restored, "every outer binding is back after the tables grew");
+    }
+
+    private static void frozen(SymbolTable symbols) {
+        symbols.clear();
+        symbols.enterScope();
+        symbols.add("x", INT);
+        symbols.freeze();
+
+        try {
+            symbols.enterScope();
+            check(false, "a frozen table rejects enterScope()");
+        } catch (IllegalStateException e) {
+            check(symbols.getType("x") == INT, "a frozen table can still be read");
+        }
+
+        symbols.clear();
+        check(!symbols.isFrozen() && symbols.find("x") < 0, "clear() unfreezes and forgets the names");
+    }
+
+    private static void check(boolean condition, String description) {
+        if (!condition) {
+            System.out.println("FAILED: " + description);
+            failures++;
+        }
+    }
+}
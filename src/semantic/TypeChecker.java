@@ -0,0 +1,382 @@
+package semantic;
+
+import java.util.Arrays;
+import java.util.List;
+
+import ast.*;
+import visitor.Visitor;
+
+/*
+ * Type checks the assignments of a program in one walk of its tree.
+ * Statements are visited recursively, the way the parser nests them.
+ * Expressions can nest as deep as the input is long, so their types are
+ * inferred bottom up with an explicit stack: an expression is visited once
+ * to push its operands and once more, after them, to combine the operand
+ * types left on the type stack into its own.
+ */
+class TypeChecker implements Visitor {
+	private final SymbolTable symbols;
+	private final List<String> messages; // receives the errors
+
+	private Exp[] work = new Exp[16]; // expressions left to visit
+	private boolean[] expanded = new boolean[16]; // operands of the work entry are pushed
+	private int works;
+	private ValueType[] types = new ValueType[16]; // types of the operands visited so far
+	private int typeCount;
+	private boolean expanding; // visit pushes the operands instead of combining their types
+
+	TypeChecker(SymbolTable symbols, List<String> messages) {
+		this.symbols = symbols;
+		this.messages = messages;
+	}
+
+	// check every assignment of program, in source order
+	void check(Program program) {
+		if (program != null)
+			program.accept(this);
+	}
+
+	// type of exp, UNKNOWN if an operand is undeclared or does not fit its operator
+	ValueType infer(Exp exp) {
+		works = 0;
+		typeCount = 0;
+		push(exp);
+
+		while (works > 0) {
+			Exp next = work[--works];
+
+			if (next == null) {
+				type(ValueType.UNKNOWN);
+			} else if (expanded[works]) {
+				expanding = false;
+				next.accept(this);
+			} else {
+				expanded[works++] = true;
+				expanding = true;
+				next.accept(this);
+			}
+		}
+		return types[0];
+	}
+
+	private void push(Exp exp) {
+		if (works == work.length) {
+			work = Arrays.copyOf(work, works * 2);
+			expanded = Arrays.copyOf(expanded, works * 2);
+		}
+		work[works] = exp;
+		expanded[works++] = false;
+	}
+
+	private void type(ValueType type) {
+		if (typeCount == types.length)
+			types = Arrays.copyOf(types, typeCount * 2);
+		types[typeCount++] = type;
+	}
+
+	private ValueType pop() {
+		return types[--typeCount];
+	}
+
+	// push the operands so lhs is visited first, or replace their types by the result
+	private void binary(Exp lhs, Exp rhs, boolean arithmetic) {
+		if (expanding) {
+			push(rhs);
+			push(lhs);
+			return;
+		}
+
+		ValueType right = pop(), left = pop();
+		type(arithmetic ? promote(left, right) : ValueType.BOOLEAN);
+	}
+
+	private void unary(Exp operand) {
+		if (expanding)
+			push(operand);
+	}
+
+	// float if either side is, int for int and char, UNKNOWN for anything else
+	private static ValueType promote(ValueType left, ValueType right) {
+		if (!left.isNumeric() || !right.isNumeric())
+			return ValueType.UNKNOWN;
+		return left == ValueType.FLOAT || right == ValueType.FLOAT ? ValueType.FLOAT : ValueType.INT;
+	}
+
+	// check id = value, or id[i] = value for an element
+	void checkAssign(Identifier id, Exp value, boolean element) {
+		if (id == null)
+			return;
+
+		String idName = id.getName();
+		ValueType target = ValueType.of(symbols.getType(idName));
+
+		if (target == ValueType.UNKNOWN)
+			return;
+		if (element)
+			target = target.isArray() ? target.element() : ValueType.UNKNOWN;
+
+		for (ErrorType error : target.assignErrors(infer(value)))
+			SemanticAnalyzer.error(error, idName, messages);
+	}
+
+	@Override
+	public void visit(Program prog) {
+		visit(prog.getStm());
+	}
+
+	private void visit(StatementList stms) {
+		if (stms == null)
+			return;
+
+		for (int i = 0; i < stms.size(); i++) {
+			Statement stm = stms.elementAt(i);
+
+			if (stm != null)
+				stm.accept(this);
+		}
+	}
+
+	@Override
+	public void visit(Block blockStm) {
+		visit(blockStm.getStms());
+	}
+
+	@Override
+	public void visit(If ifStm) {
+		if (ifStm.getTrueStm() != null)
+			ifStm.getTrueStm().accept(this);
+		if (ifStm.getFalseStm() != null)
+			ifStm.getFalseStm().accept(this);
+	}
+
+	@Override
+	public void visit(While whileStm) {
+		if (whileStm.getStm() != null)
+			whileStm.getStm().accept(this);
+	}
+
+	@Override
+	public void visit(Assign assignStm) {
+		checkAssign(assignStm.getId(), assignStm.getValue(), false);
+	}
+
+	// a[i] = value assigns one element
+	@Override
+	public void visit(ArrayAssign arrayAssignStm) {
+		checkAssign(arrayAssignStm.getId(), arrayAssignStm.getValue(), true);
+	}
+
+	@Override
+	public void visit(And andExp) {
+		binary(andExp.getLHS(), andExp.getRHS(), false);
+	}
+
+	@Override
+	public void visit(Or orExp) {
+		binary(orExp.getLHS(), orExp.getRHS(), false);
+	}
+
+	@Override
+	public void visit(MoreThan moreExp) {
+		binary(moreExp.getLHS(), moreExp.getRHS(), false);
+	}
+
+	@Override
+	public void visit(LessThan lessThanExp) {
+		binary(lessThanExp.getLHS(), lessThanExp.getRHS(), false);
+	}
+
+	@Override
+	public void visit(Equal equalExp) {
+		binary(equalExp.getLHS(), equalExp.getRHS(), false);
+	}
+
+	@Override
+	public void visit(NotEqual notEqualExp) {
+		binary(notEqualExp.getLHS(), notEqualExp.getRHS(), false);
+	}
+
+	@Override
+	public void visit(MoreThanEqual moreEqualExp) {
+		binary(moreEqualExp.getLHS(), moreEqualExp.getRHS(), false);
+	}
+
+	@Override
+	public void visit(LessThanEqual lessEqualExp) {
+		binary(lessEqualExp.getLHS(), lessEqualExp.getRHS(), false);
+	}
+
+	@Override
+	public void visit(Plus plusExp) {
+		binary(plusExp.getLHS(), plusExp.getRHS(), true);
+	}
+
+	@Override
+	public void visit(Minus minusExp) {
+		binary(minusExp.getLHS(), minusExp.getRHS(), true);
+	}
+
+	@Override
+	public void visit(Times timesExp) {
+		binary(timesExp.getLHS(), timesExp.getRHS(), true);
+	}
+
+	@Override
+	public void visit(Divide divExp) {
+		binary(divExp.getLHS(), divExp.getRHS(), true);
+	}
+
+	@Override
+	public void visit(Modules modExp) {
+		binary(modExp.getLHS(), modExp.getRHS(), true);
+	}
+
+	// the element type of the array, the index is not checked
+	@Override
+	public void visit(ArrayLookup arrayLookup) {
+		if (expanding) {
+			push(arrayLookup.getIndex());
+			push(arrayLookup.getArray());
+			return;
+		}
+
+		pop();
+		ValueType array = pop();
+		type(array.isArray() ? array.element() : ValueType.UNKNOWN);
+	}
+
+	@Override
+	public void visit(ArrayLength length) {
+		unary(length.getArray());
+		if (!expanding) {
+			pop();
+			type(ValueType.INT);
+		}
+	}
+
+	@Override
+	public void visit(Not notExp) {
+		unary(notExp.getExp());
+		if (!expanding) {
+			pop();
+			type(ValueType.BOOLEAN);
+		}
+	}
+
+	@Override
+	public void visit(Negative negExp) {
+		unary(negExp.getExp());
+		if (!expanding) {
+			ValueType operand = pop();
+			type(operand.isNumeric() ? promote(operand, ValueType.INT) : ValueType.UNKNOWN);
+		}
+	}
+
+	@Override
+	public void visit(NewArray array) {
+		unary(array.getArraySize());
+		if (!expanding) {
+			pop();
+			type(ValueType.UNKNOWN);
+		}
+	}
+
+	@Override
+	public void visit(IdentifierExp identExp) {
+		if (!expanding)
+			type(ValueType.of(symbols.getType(identExp.getName())));
+	}
+
+	@Override
+	public void visit(IntegerLiteral intLiteral) {
+		if (!expanding)
+			type(ValueType.INT);
+	}
+
+	@Override
+	public void visit(FloatLiteral floatLiteral) {
+		if (!expanding)
+			type(ValueType.FLOAT);
+	}
+
+	@Override
+	public void visit(BooleanLiteral booleanLiteral) {
+		if (!expanding)
+			type(ValueType.BOOLEAN);
+	}
+
+	@Override
+	public void visit(CharLiteral charLiteral) {
+		if (!expanding)
+			type(ValueType.CHAR);
+	}
+
+	@Override
+	public void visit(True trueLiteral) {
+		if (!expanding)
+			type(ValueType.BOOLEAN);
+	}
+
+	@Override
+	public void visit(False falseLiteral) {
+		if (!expanding)
+			type(ValueType.BOOLEAN);
+	}
+
+	// declarations, types and names are not expressions or statements
+	@Override
+	public void visit(VarDecl var) {
+	}
+
+	@Override
+	public void visit(VarDeclList varList) {
+	}
+
+	@Override
+	public void visit(Declarations dec) {
+	}
+
+	@Override
+	public void visit(Formal param) {
+	}
+
+	@Override
+	public void visit(IntegerArrayType intArrayT) {
+	}
+
+	@Override
+	public void visit(FloatArrayType floatArrayT) {
+	}
+
+	@Override
+	public void visit(BooleanArrayType booleanArrayT) {
+	}
+
+	@Override
+	public void visit(CharArrayType charArrayT) {
+	}
+
+	@Override
+	public void visit(BooleanType boolT) {
+	}
+
+	@Override
+	public void visit(IntegerType intT) {
+	}
+
+	@Override
+	public void visit(FloatType floatT) {
+	}
+
+	@Override
+	public void visit(CharType charT) {
+	}
+
+	@Override
+	public void visit(IdentifierType idT) {
+	}
+
+	@Override
+	public void visit(Identifier id) {
+	}
+}
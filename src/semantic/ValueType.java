@@ -0,0 +1,108 @@
+package semantic;
+
+import ast.BooleanArrayType;
+import ast.BooleanType;
+import ast.CharArrayType;
+import ast.CharType;
+import ast.FloatArrayType;
+import ast.FloatType;
+import ast.IntegerArrayType;
+import ast.IntegerType;
+import ast.Type;
+
+// type of a variable or an expression, UNKNOWN where it cannot be inferred
+public enum ValueType {
+	INT,
+	FLOAT,
+	CHAR,
+	BOOLEAN,
+	INT_ARRAY,
+	FLOAT_ARRAY,
+	CHAR_ARRAY,
+	BOOLEAN_ARRAY,
+	UNKNOWN;
+
+	private static final ValueType[] values = values();
+	private static final int ARRAY_OFFSET = INT_ARRAY.ordinal() - INT.ordinal();
+
+	/*
+	 * Errors of assigning a source type to a target type, by target and
+	 * source ordinal: the casting error of the element types, if any,
+	 * followed by the array/single mismatch, if any.
+	 */
+	private static final ErrorType[][][] assignErrors;
+
+	static {
+		ErrorType[][] casts = new ErrorType[ARRAY_OFFSET][ARRAY_OFFSET];
+
+		casts[INT.ordinal()][FLOAT.ordinal()] = ErrorType.FLOAT_INT_CASTING;
+		casts[INT.ordinal()][BOOLEAN.ordinal()] = ErrorType.BOOLEAN_INT_CASTING;
+		casts[FLOAT.ordinal()][BOOLEAN.ordinal()] = ErrorType.BOOLEAN_FLOAT_CASTING;
+		casts[FLOAT.ordinal()][CHAR.ordinal()] = ErrorType.CHAR_FLOAT_CASTING;
+		casts[CHAR.ordinal()][INT.ordinal()] = ErrorType.INT_CHAR_CASTING;
+		casts[CHAR.ordinal()][FLOAT.ordinal()] = ErrorType.FLOAT_CHAR_CASTING;
+		casts[CHAR.ordinal()][BOOLEAN.ordinal()] = ErrorType.BOOLEAN_CHAR_CASTING;
+		casts[BOOLEAN.ordinal()][INT.ordinal()] = ErrorType.INT_BOOLEAN_CASTING;
+		casts[BOOLEAN.ordinal()][FLOAT.ordinal()] = ErrorType.FLOAT_BOOLEAN_CASTING;
+		casts[BOOLEAN.ordinal()][CHAR.ordinal()] = ErrorType.CHAR_BOOLEAN_CASTING;
+
+		assignErrors = new ErrorType[values.length][values.length][];
+		for (ValueType target : values) {
+			for (ValueType source : values) {
+				ErrorType cast = null, shape = null;
+
+				if (target != UNKNOWN && source != UNKNOWN) {
+					cast = casts[target.element().ordinal()][source.element().ordinal()];
+
+					if (target.isArray() && !source.isArray())
+						shape = ErrorType.SINGLE_TO_ARRAY;
+					else if (!target.isArray() && source.isArray())
+						shape = ErrorType.ARRAY_TO_SINGLE;
+				}
+
+				assignErrors[target.ordinal()][source.ordinal()] = cast == null
+						? (shape == null ? new ErrorType[0] : new ErrorType[] { shape })
+						: (shape == null ? new ErrorType[] { cast } : new ErrorType[] { cast, shape });
+			}
+		}
+	}
+
+	public boolean isArray() {
+		return this != UNKNOWN && ordinal() >= ARRAY_OFFSET;
+	}
+
+	// type of the elements of an array type, the type itself otherwise
+	public ValueType element() {
+		return isArray() ? values[ordinal() - ARRAY_OFFSET] : this;
+	}
+
+	public boolean isNumeric() {
+		return this == INT || this == FLOAT || this == CHAR;
+	}
+
+	// errors of assigning a value of type source to a variable of this type, empty if none
+	public ErrorType[] assignErrors(ValueType source) {
+		return assignErrors[ordinal()][source.ordinal()];
+	}
+
+	// type of a declaration, UNKNOWN for null
+	public static ValueType of(Type type) {
+		if (type instanceof IntegerType)
+			return INT;
+		if (type instanceof FloatType)
+			return FLOAT;
+		if (type instanceof CharType)
+			return CHAR;
+		if (type instanceof BooleanType)
+			return BOOLEAN;
+		if (type instanceof IntegerArrayType)
+			return INT_ARRAY;
+		if (type instanceof FloatArrayType)
+			return FLOAT_ARRAY;
+		if (type instanceof CharArrayType)
+			return CHAR_ARRAY;
+		if (type instanceof BooleanArrayType)
+			return BOOLEAN_ARRAY;
+		return UNKNOWN;
+	}
+}